@@ -0,0 +1,82 @@
+import benchmark.MatchingWorkload;
+import java.util.Random;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+
+/**
+ * Orders are priced in ticks of 0.01 around a mid price of 100.00. LIMIT orders are GTC and priced uniformly within
+ * bookDepth ticks of the mid price, so roughly half of them cross and trade and the rest rest on the book, which
+ * keeps the depth of the book steady. MARKET orders are FOK, so they never queue up when one side is empty. STOP
+ * orders are GTC MARKET orders triggered within a few ticks of the mid price, so trades keep activating them
+ */
+public class ExchangeWorkload implements MatchingWorkload {
+
+    private static final int STREAM_LENGTH = 1 << 16;
+    private static final double MID_PRICE = 100.00;
+    private static final double TICK_SIZE = 0.01;
+    private static final int STOP_TRIGGER_TICKS = 5;
+
+    private Exchange exchange;
+    private Order[] orders;
+    private int nextOrder;
+
+    public void setUp(int tickerCount, int bookDepth, double marketOrderRatio, double stopOrderRatio, long seed) {
+        Configurator.setRootLevel(Level.OFF);
+        this.exchange = new Exchange();
+        int[] tickerIds = new int[tickerCount];
+        for (int i = 0; i < tickerCount; i++) tickerIds[i] = this.exchange.getTickerId("TICKER" + i);
+
+        int orderId = 0;
+        for (int tickerId : tickerIds) {
+            for (int level = 1; level <= bookDepth; level++) {
+                this.exchange.findMatchingOrder(limitOrder(orderId++, tickerId, Direction.BUY,
+                    MID_PRICE - level * TICK_SIZE), agreement -> { });
+                this.exchange.findMatchingOrder(limitOrder(orderId++, tickerId, Direction.SELL,
+                    MID_PRICE + level * TICK_SIZE), agreement -> { });
+            }
+        }
+
+        Random random = new Random(seed);
+        this.orders = new Order[STREAM_LENGTH];
+        for (int i = 0; i < STREAM_LENGTH; i++) {
+            int tickerId = tickerIds[random.nextInt(tickerCount)];
+            Direction direction = Direction.SELL;
+            if (random.nextBoolean()) direction = Direction.BUY;
+            double orderType = random.nextDouble();
+            if (orderType < stopOrderRatio) {
+                double triggerPrice = MID_PRICE + (random.nextInt(2 * STOP_TRIGGER_TICKS + 1) - STOP_TRIGGER_TICKS) * TICK_SIZE;
+                this.orders[i] = stopOrder(orderId++, tickerId, direction, triggerPrice);
+            } else if (orderType < stopOrderRatio + marketOrderRatio) {
+                this.orders[i] = marketOrder(orderId++, tickerId, direction);
+            } else {
+                double limitPrice = MID_PRICE + (random.nextInt(2 * bookDepth + 1) - bookDepth) * TICK_SIZE;
+                this.orders[i] = limitOrder(orderId++, tickerId, direction, limitPrice);
+            }
+        }
+        this.nextOrder = 0;
+    }
+
+    public int submitNextOrder() {
+        Order order = this.orders[this.nextOrder];
+        this.nextOrder = (this.nextOrder + 1) & (STREAM_LENGTH - 1);
+        return this.exchange.findMatchingOrder(order, agreement -> { });
+    }
+
+    private static Order limitOrder(int orderId, int tickerId, Direction direction, double limitPrice) {
+        return Order.builder().orderId(orderId).direction(direction).quantity(100).tickerId(tickerId)
+            .type(OrderType.LIMIT).limitPrice(limitPrice).timeInForce(TimeInForce.GTC)
+            .triggerPrice(Order.NO_PRICE).build();
+    }
+
+    private static Order marketOrder(int orderId, int tickerId, Direction direction) {
+        return Order.builder().orderId(orderId).direction(direction).quantity(100).tickerId(tickerId)
+            .type(OrderType.MARKET).limitPrice(Order.NO_PRICE).timeInForce(TimeInForce.FOK)
+            .triggerPrice(Order.NO_PRICE).build();
+    }
+
+    private static Order stopOrder(int orderId, int tickerId, Direction direction, double triggerPrice) {
+        return Order.builder().orderId(orderId).direction(direction).quantity(100).tickerId(tickerId)
+            .type(OrderType.MARKET).limitPrice(Order.NO_PRICE).timeInForce(TimeInForce.GTC)
+            .triggerPrice(triggerPrice).build();
+    }
+}
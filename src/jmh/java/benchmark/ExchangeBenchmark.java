@@ -0,0 +1,55 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Matching throughput and latency of Exchange.findMatchingOrder. Each invocation matches one order of a synthetic
+ * stream, so Throughput reports orders per second and SampleTime reports per order latency percentiles. Run with
+ * -prof gc for the allocation rate per order. The Exchange is rebuilt for every iteration so that each iteration
+ * starts from the same book
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExchangeBenchmark {
+
+    @Param({"1", "16"})
+    public int tickerCount;
+
+    @Param({"10", "1000"})
+    public int bookDepth;
+
+    @Param({"0.2"})
+    public double marketOrderRatio;
+
+    @Param({"0.0", "0.1"})
+    public double stopOrderRatio;
+
+    private MatchingWorkload workload;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws ReflectiveOperationException {
+        this.workload = (MatchingWorkload) Class.forName("ExchangeWorkload").newInstance();
+        this.workload.setUp(this.tickerCount, this.bookDepth, this.marketOrderRatio, this.stopOrderRatio, 42);
+    }
+
+    @Benchmark
+    public int findMatchingOrder() {
+        return this.workload.submitNextOrder();
+    }
+}
@@ -0,0 +1,25 @@
+package benchmark;
+
+/**
+ * A synthetic order stream fed into an Exchange. The Exchange lives in the default package, which a benchmark in a
+ * named package cannot refer to, so the benchmarks drive it through this interface; ExchangeWorkload is loaded by name
+ * once per iteration, and the matching path itself is a plain interface call
+ */
+public interface MatchingWorkload {
+
+    /**
+     * Creates a new Exchange with bookDepth resting LIMIT orders per side per ticker, and generates the order stream
+     * @param tickerCount: number of tickers the orders are spread across
+     * @param bookDepth: number of price levels either side of the mid price
+     * @param marketOrderRatio: share of the stream which is MARKET orders, the rest being LIMIT orders
+     * @param stopOrderRatio: share of the stream which is STOP orders
+     * @param seed: the stream is the same for the same seed
+     */
+    void setUp(int tickerCount, int bookDepth, double marketOrderRatio, double stopOrderRatio, long seed);
+
+    /**
+     * Submits the next order of the stream to the Exchange, wrapping round at the end of the stream
+     * @return the number of Agreements made
+     */
+    int submitNextOrder();
+}
@@ -1,4 +1,4 @@
-import java.util.HashMap;
+import java.util.Arrays;
 
 import lombok.ToString;
 import lombok.Value;
@@ -8,20 +8,38 @@ import lombok.extern.log4j.Log4j2;
 @ToString
 public class Account {
 
-    private double cashInventory;
-    private HashMap<String, Integer> stockInventory;
+    /**
+     * Shares held are indexed by ticker id. A ticker which was not in the initial stock of the account holds
+     * NO_POSITION until shares in it are received
+     */
+    public static final int NO_POSITION = -1;
+    /**
+     * Cash is held as a whole number of minor units, ten thousandths of the currency unit, so that the fee on a price in
+     * cents is held exactly and balances add up without rounding error
+     */
+    public static final long MINOR_UNITS_PER_UNIT = 10000;
+
+    private long cashInventory;
+    private int[] stockInventory;
 
     public Account() {
-        this.cashInventory = 0.0;
-        this.stockInventory = new HashMap<String, Integer>();
+        this.cashInventory = 0;
+        this.stockInventory = new int[0];
     }
 
 
+    /**
+     * @param cash: amount in currency units, which is rounded to the nearest minor unit
+     */
     public void cashInitialise(String cash){
-        this.cashInventory = Double.parseDouble(cash);
+        this.cashInventory = toMinorUnits(Double.parseDouble(cash));
     }
 
-    public void stockInitialise(String stock){
+    /**
+     * @param stock: space separated TICKER:QUANTITY pairs
+     * @param referenceData: resolves the tickers to their ids; tickers which are not traded on the exchange are ignored
+     */
+    public void stockInitialise(String stock, ReferenceData referenceData){
         String stockSplitBy = " ";
         String[] initialStock = stock.split(stockSplitBy);
         for(String tickerValuePair : initialStock) {
@@ -30,37 +48,104 @@ public class Account {
             String ticker = splitTickerValuePair[0];
             int quantity = Integer.parseInt(splitTickerValuePair[1]);
 
-            this.stockInventory.put(ticker, quantity);
+            int tickerId = referenceData.getTickerId(ticker);
+            if (tickerId == ReferenceData.UNKNOWN_ID) {
+                LOGGER.warn("Initial stock in unrecognised ticker ignored: {}", ticker);
+                continue;
+            }
+            setShares(tickerId, quantity);
         }
     }
 
-    public void addCash(double cash){
+    /**
+     * @param cash: in minor units
+     */
+    public void addCash(long cash){
         this.cashInventory+=cash;
         LOGGER.debug("Cash added to inventory: {}", cash);
     }
 
-    public void removeCash(double cash){
+    /**
+     * @param cash: in minor units
+     */
+    public void removeCash(long cash){
         this.cashInventory-=cash;
         LOGGER.debug("Cash removed from inventory: {}", cash);
     }
 
     public void addShares(SharesTradeDetails sharesTradeDetails){
-        int currentInventory = this.stockInventory.get(sharesTradeDetails.getTicker());
-        this.stockInventory.put(sharesTradeDetails.getTicker(), currentInventory+sharesTradeDetails.getQuantity());
-        LOGGER.debug("Shares added to inventory: {} : {}", sharesTradeDetails.getTicker(), sharesTradeDetails.getQuantity());
+        int currentInventory = heldShares(sharesTradeDetails.getTickerId());
+        setShares(sharesTradeDetails.getTickerId(), currentInventory+sharesTradeDetails.getQuantity());
+        LOGGER.debug("Shares added to inventory: {} : {}", sharesTradeDetails.getTickerId(), sharesTradeDetails.getQuantity());
     }
 
     public void removeShares(SharesTradeDetails sharesTradeDetails){
-        int currentInventory = this.stockInventory.get(sharesTradeDetails.getTicker());
-        this.stockInventory.put(sharesTradeDetails.getTicker(), currentInventory+sharesTradeDetails.getQuantity());
-        LOGGER.debug("Shares removed from inventory: {} : {}", sharesTradeDetails.getTicker(), sharesTradeDetails.getQuantity());
+        int currentInventory = heldShares(sharesTradeDetails.getTickerId());
+        setShares(sharesTradeDetails.getTickerId(), currentInventory+sharesTradeDetails.getQuantity());
+        LOGGER.debug("Shares removed from inventory: {} : {}", sharesTradeDetails.getTickerId(), sharesTradeDetails.getQuantity());
+    }
+
+    private int heldShares(int tickerId) {
+        int shares = getShares(tickerId);
+        if (shares == NO_POSITION) return 0;
+        return shares;
+    }
+
+    private void setShares(int tickerId, int quantity) {
+        if (tickerId >= this.stockInventory.length) {
+            int previousLength = this.stockInventory.length;
+            this.stockInventory = Arrays.copyOf(this.stockInventory, tickerId + 1);
+            Arrays.fill(this.stockInventory, previousLength, tickerId, NO_POSITION);
+        }
+        this.stockInventory[tickerId] = quantity;
+    }
+
+    /**
+     * Replaces the cash and shares held with those from a snapshot
+     * @param cash: in minor units
+     * @param stock: shares held, indexed by ticker id
+     */
+    public void restore(long cash, int[] stock) {
+        this.cashInventory = cash;
+        this.stockInventory = Arrays.copyOf(stock, stock.length);
+    }
+
+    /**
+     * @return a copy of the shares held, indexed by ticker id
+     */
+    public int[] copyStockInventory() {
+        return Arrays.copyOf(this.stockInventory, this.stockInventory.length);
     }
 
-    public double getCashInventory(){
+    /**
+     * @return the cash held, in minor units
+     */
+    public long getCashInventory(){
         return this.cashInventory;
     }
 
-    public HashMap<String, Integer> getStockInventory(){
-        return this.stockInventory;
+    /**
+     * @param units: an amount in currency units
+     * @return the amount in minor units, rounded to the nearest minor unit
+     */
+    public static long toMinorUnits(double units){
+        return Math.round(units * MINOR_UNITS_PER_UNIT);
+    }
+
+    /**
+     * @param minorUnits
+     * @return the amount in currency units
+     */
+    public static double toUnits(long minorUnits){
+        return (double) minorUnits / MINOR_UNITS_PER_UNIT;
+    }
+
+    /**
+     * @param tickerId
+     * @return the number of shares held in the ticker, or NO_POSITION if the account has never held it
+     */
+    public int getShares(int tickerId){
+        if (tickerId < 0 || tickerId >= this.stockInventory.length) return NO_POSITION;
+        return this.stockInventory[tickerId];
     }
 }
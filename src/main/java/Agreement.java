@@ -1,5 +1,4 @@
 import lombok.Builder;
-import lombok.Setter;
 import lombok.Value;
 
 @Builder
@@ -9,21 +8,27 @@ public class Agreement {
     private final Customer buyCustomer;
     private final Customer sellCustomer;
     private final String ticker;
+    private final int tickerId;
     private final int matchQuantity;
     private final double matchPrice;
     private final int dateOfAgreement;
 
     public String toString(){
-        String sellCust = sellCustomer.getName();
-        String ticker = this.ticker;
-        String matchQ = Integer.toString(this.matchQuantity);
-        return this.buyCustomer.getName()+","
-                +this.sellCustomer.getName()+","
-                +this.ticker+ ","
-                +Integer.toString(this.matchQuantity)
-                +","+Double.toString(this.matchPrice)
-                +","+this.dateOfAgreement;
+        StringBuilder builder = new StringBuilder();
+        appendTo(builder);
+        return builder.toString();
     }
 
-
+    /**
+     * Appends the mission record of the agreement, as written to the missions file, without allocating
+     * @param builder
+     */
+    public void appendTo(StringBuilder builder){
+        builder.append(this.buyCustomer.getName()).append(',')
+            .append(this.sellCustomer.getName()).append(',')
+            .append(this.ticker).append(',')
+            .append(this.matchQuantity).append(',');
+        DecimalEncoder.appendDouble(builder, this.matchPrice);
+        builder.append(',').append(this.dateOfAgreement);
+    }
 }
@@ -0,0 +1,9 @@
+public interface AgreementSink {
+
+    /**
+     * Receives each Agreement made by the Exchange, in the order in which the trades were matched. A single order may
+     * produce several Agreements when its trade activates STOP orders which then trade themselves
+     * @param agreement
+     */
+    void onAgreement(Agreement agreement);
+}
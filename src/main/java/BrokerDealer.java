@@ -1,6 +1,5 @@
 import com.google.common.base.Ticker;
-import com.sun.org.apache.xml.internal.security.Init;
-import java.util.HashMap;
+import java.util.ArrayList;
 
 import lombok.Getter;
 import lombok.ToString;
@@ -11,84 +10,99 @@ import lombok.extern.log4j.Log4j2;
 @ToString
 public class BrokerDealer {
 
+    private int id;
     private String name;
-    private HashMap<String, Account> customerAccounts;
+    /**
+     * Accounts are indexed by customer id; customers of other prime brokers have no account here
+     */
+    private ArrayList<Account> customerAccounts;
     private Account brokerDealerAccount;
     private double primeBrokerFees=0.10;
     private double executingBrokerFees=0.05;
 
-    public BrokerDealer(InitialValues initialValues) {
+    public BrokerDealer(int id, InitialValues initialValues, ReferenceData referenceData) {
+        this.id = id;
         this.name = initialValues.getClientName();
-        this.customerAccounts = new HashMap<String, Account>();
+        this.customerAccounts = new ArrayList<Account>();
         this.brokerDealerAccount = new Account();
-        initialiseBrokerDealerAccount(initialValues);
+        initialiseBrokerDealerAccount(initialValues, referenceData);
     }
 
-    public void initialiseBrokerDealerAccount(InitialValues initialValues){
+    public void initialiseBrokerDealerAccount(InitialValues initialValues, ReferenceData referenceData){
         this.brokerDealerAccount.cashInitialise(initialValues.getInitialCash());
-        this.brokerDealerAccount.stockInitialise(initialValues.getInitialStock());
+        this.brokerDealerAccount.stockInitialise(initialValues.getInitialStock(), referenceData);
     }
 
-    public void addCustomer(String customerName) {
-        customerAccounts.put(customerName, new Account());
+    public void addCustomer(int customerId) {
+        while (this.customerAccounts.size() <= customerId) this.customerAccounts.add(null);
+        this.customerAccounts.set(customerId, new Account());
     }
 
-    public void initialiseCustomerAccount(InitialValues clientInitialValues){
-        Account customerAccount = this.customerAccounts.get(clientInitialValues.getClientName());
+    public void initialiseCustomerAccount(int customerId, InitialValues clientInitialValues,
+        ReferenceData referenceData){
+        Account customerAccount = this.customerAccounts.get(customerId);
         customerAccount.cashInitialise(clientInitialValues.getInitialCash());
-        customerAccount.stockInitialise(clientInitialValues.getInitialStock());
+        customerAccount.stockInitialise(clientInitialValues.getInitialStock(), referenceData);
     }
 
-    public void agencyFees(double fees){
+    /**
+     * @param fees: in minor units
+     */
+    public void agencyFees(long fees){
         LOGGER.debug("Agency fee for: {}", name);
         this.brokerDealerAccount.addCash(fees);
     }
 
-    public void custodialFees(double fees){
+    /**
+     * @param fees: in minor units
+     */
+    public void custodialFees(long fees){
         LOGGER.debug("Custodial fee for: {}", name);
         this.brokerDealerAccount.addCash(fees);
     }
 
     public void deliverCash(CashTradeDetails cashForDelivery){
-        LOGGER.debug("Customer delivering cash: {}", cashForDelivery.getCustomer());
-        Account customerAccount = this.customerAccounts.get(cashForDelivery.getCustomer());
+        LOGGER.debug("Customer delivering cash: {}", cashForDelivery.getCustomerId());
+        Account customerAccount = this.customerAccounts.get(cashForDelivery.getCustomerId());
         customerAccount.removeCash(cashForDelivery.getCash());
     }
 
     public void receiveCash(CashTradeDetails cashToReceive){
-        LOGGER.debug("Customer receiving cash: {}", cashToReceive.getCustomer());
-        Account customerAccount = this.customerAccounts.get(cashToReceive.getCustomer());
+        LOGGER.debug("Customer receiving cash: {}", cashToReceive.getCustomerId());
+        Account customerAccount = this.customerAccounts.get(cashToReceive.getCustomerId());
         customerAccount.addCash(cashToReceive.getCash());
     }
 
     public void deliverShares(SharesTradeDetails sharesToDeliver){
-        LOGGER.debug("Customer delivering shares: {}", sharesToDeliver.getCustomer());
+        LOGGER.debug("Customer delivering shares: {}", sharesToDeliver.getCustomerId());
 
-        Account customerAccount = this.customerAccounts.get(sharesToDeliver.getCustomer());
+        Account customerAccount = this.customerAccounts.get(sharesToDeliver.getCustomerId());
 
         customerAccount.removeShares(sharesToDeliver);
     }
 
     public void receiveShares(SharesTradeDetails sharesToReceive){
-        LOGGER.debug("Customer receiving shares: {}", sharesToReceive.getCustomer());
-        Account customerAccount = this.customerAccounts.get(sharesToReceive.getCustomer());
+        LOGGER.debug("Customer receiving shares: {}", sharesToReceive.getCustomerId());
+        Account customerAccount = this.customerAccounts.get(sharesToReceive.getCustomerId());
         customerAccount.addShares(sharesToReceive);
     }
 
-    public double getCustomerCash(CashCheck cashCheck){
-        return customerAccounts.get(cashCheck.getCustomer().getName()).getCashInventory();
+    /**
+     * @param cashCheck
+     * @return the cash held by the customer, in minor units
+     */
+    public long getCustomerCash(CashCheck cashCheck){
+        return customerAccounts.get(cashCheck.getCustomer().getId()).getCashInventory();
     }
 
     public int getCustomerShares(TickerQuantityPair tickerQuantityPair){
-        try {
-            int actualQuantity = customerAccounts.get(tickerQuantityPair.getCustomer().getName())
-                .getStockInventory()
-                .get(tickerQuantityPair.getTicker());
-            return actualQuantity;
-        } catch (NullPointerException e) {
-            LOGGER.warn("No shares matching the input ticker \"{}\" were found in the inventory of customer \"{}\"", tickerQuantityPair.getTicker(),tickerQuantityPair.getCustomer().getName());
+        int actualQuantity = customerAccounts.get(tickerQuantityPair.getCustomer().getId())
+            .getShares(tickerQuantityPair.getTickerId());
+        if (actualQuantity == Account.NO_POSITION) {
+            LOGGER.warn("No shares matching the input ticker \"{}\" were found in the inventory of customer \"{}\"", tickerQuantityPair.getTickerId(),tickerQuantityPair.getCustomer().getName());
             return -1;
         }
+        return actualQuantity;
     }
 
 }
@@ -4,6 +4,7 @@ import lombok.Value;
 @Builder
 @Value
 public class CashTradeDetails {
-    private final String customer;
-    private final double cash;
+    private final int customerId;
+    /** In minor units */
+    private final long cash;
 }
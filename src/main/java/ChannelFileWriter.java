@@ -0,0 +1,138 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Writes text files through a FileChannel from one large byte buffer, which is allocated when the first file is
+ * opened and reused for every file the writer writes. Text is encoded straight into the buffer, and the buffer
+ * only goes to the channel when it is full or the file is closed, so a day's output is written in a few large
+ * sequential writes. The bytes written are those which a FileWriter would write, in the default charset.
+ * An atomic writer writes each file to a temporary file alongside it, and moves it into place when it is closed,
+ * so the file is never seen half written. A writer writes one file at a time, from one thread
+ */
+@Log4j2
+public class ChannelFileWriter {
+
+    private static final int DEFAULT_BUFFER_BYTES = 8 * 1024 * 1024;
+
+    private final int bufferBytes;
+    private final boolean atomic;
+    private final Charset charset;
+    private final boolean asciiCompatible;
+    private ByteBuffer buffer;
+    private FileChannel channel;
+    private Path path;
+    private Path writePath;
+
+    public ChannelFileWriter(boolean atomic) {
+        this(DEFAULT_BUFFER_BYTES, atomic);
+    }
+
+    /**
+     * @param bufferBytes: size of the buffer, and so of each write to the channel
+     * @param atomic: true to write each file to a temporary file, which replaces the file when it is closed
+     */
+    public ChannelFileWriter(int bufferBytes, boolean atomic) {
+        if (bufferBytes < 1) {
+            LOGGER.error("Invalid buffer size: {}", bufferBytes);
+            throw new IllegalArgumentException();
+        }
+        this.bufferBytes = bufferBytes;
+        this.atomic = atomic;
+        this.charset = Charset.defaultCharset();
+        this.asciiCompatible = isAsciiCompatible(this.charset);
+    }
+
+    /**
+     * Creates or truncates the file, ready to be appended to
+     * @param path
+     * @throws IOException
+     */
+    public void open(Path path) throws IOException {
+        if (this.channel != null) {
+            LOGGER.error("{} opened while {} is still open", path, this.path);
+            throw new IllegalStateException("Writer is already open");
+        }
+        this.path = path;
+        this.writePath = path;
+        if (this.atomic) this.writePath = path.resolveSibling(path.getFileName() + ".tmp");
+        this.channel = FileChannel.open(this.writePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+        if (this.buffer == null) this.buffer = ByteBuffer.allocateDirect(this.bufferBytes);
+        this.buffer.clear();
+    }
+
+    public void append(CharSequence text) throws IOException {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80 || !this.asciiCompatible) {
+                appendBytes(text.subSequence(i, length).toString().getBytes(this.charset));
+                return;
+            }
+            if (!this.buffer.hasRemaining()) flush();
+            this.buffer.put((byte) c);
+        }
+    }
+
+    public void append(char c) throws IOException {
+        if (c >= 0x80 || !this.asciiCompatible) {
+            appendBytes(String.valueOf(c).getBytes(this.charset));
+            return;
+        }
+        if (!this.buffer.hasRemaining()) flush();
+        this.buffer.put((byte) c);
+    }
+
+    private void appendBytes(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!this.buffer.hasRemaining()) flush();
+            int length = Math.min(bytes.length - offset, this.buffer.remaining());
+            this.buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    /**
+     * Writes out what is left in the buffer and closes the file, moving it into place if the writer is atomic
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        try {
+            flush();
+            if (this.atomic) this.channel.force(false);
+        } finally {
+            this.channel.close();
+            this.channel = null;
+        }
+        if (this.atomic) {
+            Files.move(this.writePath, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private void flush() throws IOException {
+        this.buffer.flip();
+        while (this.buffer.hasRemaining()) this.channel.write(this.buffer);
+        this.buffer.clear();
+    }
+
+    /**
+     * @return whether every ASCII character is encoded as its own single byte, so that it can be put straight into the
+     * buffer
+     */
+    private static boolean isAsciiCompatible(Charset charset) {
+        char[] ascii = new char[0x80];
+        for (char c = 0; c < ascii.length; c++) ascii[c] = c;
+        String asciiString = new String(ascii);
+        return Arrays.equals(asciiString.getBytes(StandardCharsets.US_ASCII), asciiString.getBytes(charset));
+    }
+}
@@ -1,5 +1,4 @@
 import com.google.common.base.Ticker;
-import java.util.HashMap;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.ToString;
@@ -10,16 +9,18 @@ import lombok.extern.log4j.Log4j2;
 @ToString
 public class Customer {
 
+    private int id;
     private String name;
     private BrokerDealer executingBroker;
     private BrokerDealer primeBroker;
 
-    public Customer(CustomerCsvFields customerCsvFields, HashMap<String, BrokerDealer> mapOfBrokerDealers, InitialValues initialValues) {
+    public Customer(int id, CustomerCsvFields customerCsvFields, ReferenceData referenceData, InitialValues initialValues) {
+        this.id = id;
         this.name = customerCsvFields.getClientName();
-        this.executingBroker = mapOfBrokerDealers.get(customerCsvFields.getExecutingBroker());
-        this.primeBroker = mapOfBrokerDealers.get(customerCsvFields.getPrimeBroker());
-        this.primeBroker.addCustomer(name);
-        this.primeBroker.initialiseCustomerAccount(initialValues);
+        this.executingBroker = referenceData.getBrokerDealer(customerCsvFields.getExecutingBroker());
+        this.primeBroker = referenceData.getBrokerDealer(customerCsvFields.getPrimeBroker());
+        this.primeBroker.addCustomer(id);
+        this.primeBroker.initialiseCustomerAccount(id, initialValues, referenceData);
     }
 
     public void deliverCash(CashTradeDetails cashForDelivery){
@@ -39,7 +40,7 @@ public class Customer {
     }
 
     public boolean checkSufficientCash(CashCheck cashCheck){
-        if (this.primeBroker.getCustomerCash(cashCheck) < cashCheck.getCash() ) return false;
+        if (Account.toUnits(this.primeBroker.getCustomerCash(cashCheck)) < cashCheck.getCash() ) return false;
         return true;
     }
 
@@ -0,0 +1,74 @@
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Appends doubles to a StringBuilder as the same characters Double.toString, or a DecimalFormat of "#.00", would
+ * give, without allocating. Each value is worked out as a whole number of cents, which is written out digit by
+ * digit, so a record can be encoded straight into a reused buffer. A value which the cents cannot be sure to give
+ * the same characters for, such as one very large, negative, or exactly half way between two cents, is left to
+ * Double.toString or the DecimalFormat
+ */
+@Log4j2
+public class DecimalEncoder {
+
+    private static final ThreadLocal<DecimalFormat> CENTS_FORMAT =
+        ThreadLocal.withInitial(() -> new DecimalFormat("#.00"));
+    private static final boolean PLAIN_SYMBOLS = hasPlainSymbols(new DecimalFormat("#.00").getDecimalFormatSymbols());
+    /** Below 2^52 cents every double holds a whole number of cents, or a fraction of one, exactly */
+    private static final double MAX_CENTS = 4503599627370496.0;
+
+    private DecimalEncoder() {
+    }
+
+    /**
+     * Appends the characters of Double.toString(value)
+     * @param builder
+     * @param value
+     */
+    public static void appendDouble(StringBuilder builder, double value) {
+        // Double.toString writes values from 10^-3 up to 10^7 without an exponent, and with at least one decimal place
+        if (value >= 1e-3 && value < 1e7) {
+            long cents = Math.round(value * 100);
+            // Only a value which is the closest double to its whole number of cents is written as that number
+            if (cents / 100.0 == value) {
+                builder.append(cents / 100).append('.');
+                int fraction = (int) (cents % 100);
+                builder.append((char) ('0' + fraction / 10));
+                if (fraction % 10 != 0) builder.append((char) ('0' + fraction % 10));
+                return;
+            }
+        }
+        builder.append(Double.toString(value));
+    }
+
+    /**
+     * Appends the characters of new DecimalFormat("#.00").format(value): the value rounded half even to cents, with
+     * no digits before the decimal point if it is less than one
+     * @param builder
+     * @param value
+     */
+    public static void appendCents(StringBuilder builder, double value) {
+        double scaled = value * 100;
+        if (PLAIN_SYMBOLS && value > 0 && scaled < MAX_CENTS) {
+            double whole = Math.floor(scaled);
+            double fraction = scaled - whole;
+            // The product is within half an ulp of the exact value, so only a fraction this close to a half could round
+            // the other way
+            if (Math.abs(fraction - 0.5) > Math.ulp(scaled)) {
+                long cents = (long) whole;
+                if (fraction > 0.5) cents++;
+                if (cents >= 100) builder.append(cents / 100);
+                builder.append('.');
+                int centsFraction = (int) (cents % 100);
+                builder.append((char) ('0' + centsFraction / 10)).append((char) ('0' + centsFraction % 10));
+                return;
+            }
+        }
+        builder.append(CENTS_FORMAT.get().format(value));
+    }
+
+    private static boolean hasPlainSymbols(DecimalFormatSymbols symbols) {
+        return symbols.getDecimalSeparator() == '.' && symbols.getZeroDigit() == '0';
+    }
+}
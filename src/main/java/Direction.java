@@ -0,0 +1,4 @@
+public enum Direction {
+    BUY,
+    SELL
+}
@@ -4,6 +4,14 @@ import lombok.extern.log4j.Log4j2;
 @Log4j2
 public class ESMA {
 
+    private final int settlementCycle;
+
+    /**
+     * @param settlementCycle: number of days between an agreement and its settlement
+     */
+    public ESMA(int settlementCycle) {
+        this.settlementCycle = settlementCycle;
+    }
 
     public Settlement facilitateTransaction(Agreement agreement){
         LOGGER.info("New mission to be settled: {}", agreement.toString());
@@ -17,21 +25,31 @@ public class ESMA {
     }
 
     public Settlement createSettlement(Agreement agreement) {
+        Customer buyCustomer = agreement.getBuyCustomer();
+        Customer sellCustomer = agreement.getSellCustomer();
+        double matchPrice = agreement.getMatchPrice();
+        double sellPrimeBrokerFee = sellCustomer.getPrimeBroker().getPrimeBrokerFees()*matchPrice;
+        double sellExecutingBrokerFee = sellCustomer.getExecutingBroker().getExecutingBrokerFees()*matchPrice;
         return Settlement.builder()
-            .buyCustomer(agreement.getBuyCustomer())
-            .sellCustomer(agreement.getSellCustomer())
+            .buyCustomer(buyCustomer)
+            .sellCustomer(sellCustomer)
             .matchQuantity(agreement.getMatchQuantity())
             .ticker(agreement.getTicker())
-            .matchPrice(agreement.getMatchPrice())
-            .dateOfSettlement(agreement.getDateOfAgreement()+2)
+            .matchPrice(matchPrice)
+            .dateOfSettlement(agreement.getDateOfAgreement()+this.settlementCycle)
+            .buyPrimeBrokerFee(buyCustomer.getPrimeBroker().getPrimeBrokerFees()*matchPrice)
+            .buyExecutingBrokerFee(buyCustomer.getExecutingBroker().getExecutingBrokerFees()*matchPrice)
+            .sellPrimeBrokerFee(sellPrimeBrokerFee)
+            .sellExecutingBrokerFee(sellExecutingBrokerFee)
+            .sellReceived(matchPrice-(sellPrimeBrokerFee+sellExecutingBrokerFee))
             .build();
     }
 
     public void sellSideShares(Agreement agreement) {
         SharesTradeDetails sharesToDeliver = SharesTradeDetails.builder()
-            .customer(agreement.getSellCustomer().getName())
+            .customerId(agreement.getSellCustomer().getId())
             .quantity(agreement.getMatchQuantity())
-            .ticker(agreement.getTicker())
+            .tickerId(agreement.getTickerId())
             .build();
 
         agreement.getSellCustomer().deliverShares(sharesToDeliver);
@@ -39,9 +57,9 @@ public class ESMA {
 
     public void buySideShares(Agreement agreement){
         SharesTradeDetails sharesToReceive = SharesTradeDetails.builder()
-            .customer(agreement.getBuyCustomer().getName())
+            .customerId(agreement.getBuyCustomer().getId())
             .quantity(agreement.getMatchQuantity())
-            .ticker(agreement.getTicker())
+            .tickerId(agreement.getTickerId())
             .build();
 
         agreement.getBuyCustomer().receiveShares(sharesToReceive);
@@ -52,16 +70,14 @@ public class ESMA {
         double matchPrice = agreement.getMatchPrice();
 
         CashTradeDetails cashForDelivery = CashTradeDetails.builder()
-            .customer(buyCustomer.getName())
-            .cash(matchPrice)
+            .customerId(buyCustomer.getId())
+            .cash(Account.toMinorUnits(matchPrice))
             .build();
 
         LOGGER.debug("Customer buying shares: {}", buyCustomer.getName().toString());
         buyCustomer.deliverCash(cashForDelivery);
-        double buyPrimeBrokerFees = buyCustomer.getPrimeBroker().getPrimeBrokerFees();
-        double buyExecutingBrokerFees = buyCustomer.getExecutingBroker().getExecutingBrokerFees();
-        double buyCustodialFees = matchPrice*buyPrimeBrokerFees;
-        double buyAgencyFees = matchPrice*buyExecutingBrokerFees;
+        long buyCustodialFees = custodialFees(buyCustomer, matchPrice);
+        long buyAgencyFees = agencyFees(buyCustomer, matchPrice);
         buyCustomer.getPrimeBroker().custodialFees(buyCustodialFees);
         buyCustomer.getExecutingBroker().agencyFees(buyAgencyFees);
     }
@@ -72,22 +88,38 @@ public class ESMA {
 
         LOGGER.debug("Customer selling shares: {}", sellCustomer.getName().toString());
 
-        double sellPrimeBrokerFees = sellCustomer.getPrimeBroker().getPrimeBrokerFees();
-        double sellExecutingBrokerFees = sellCustomer.getExecutingBroker().getExecutingBrokerFees();
-        double sellCustodialFees = matchPrice*sellPrimeBrokerFees;
-        double sellAgencyFees = matchPrice*sellExecutingBrokerFees;
+        long sellCustodialFees = custodialFees(sellCustomer, matchPrice);
+        long sellAgencyFees = agencyFees(sellCustomer, matchPrice);
         sellCustomer.getPrimeBroker().custodialFees(sellCustodialFees);
         sellCustomer.getExecutingBroker().agencyFees(sellAgencyFees);
 
-        double remainingCashPayment = matchPrice - sellCustodialFees - sellAgencyFees;
+        long remainingCashPayment = Account.toMinorUnits(matchPrice) - sellCustodialFees - sellAgencyFees;
 
         CashTradeDetails cashToReceive = CashTradeDetails.builder()
-            .customer(sellCustomer.getName())
+            .customerId(sellCustomer.getId())
             .cash(remainingCashPayment)
             .build();
 
         sellCustomer.receiveCash(cashToReceive);
     }
 
+    /**
+     * @param customer
+     * @param matchPrice
+     * @return the fee the prime broker of the customer is paid on a trade at the price, in minor units
+     */
+    public static long custodialFees(Customer customer, double matchPrice) {
+        return Account.toMinorUnits(matchPrice*customer.getPrimeBroker().getPrimeBrokerFees());
+    }
+
+    /**
+     * @param customer
+     * @param matchPrice
+     * @return the fee the executing broker of the customer is paid on a trade at the price, in minor units
+     */
+    public static long agencyFees(Customer customer, double matchPrice) {
+        return Account.toMinorUnits(matchPrice*customer.getExecutingBroker().getExecutingBrokerFees());
+    }
+
 
 }
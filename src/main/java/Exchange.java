@@ -1,4 +1,4 @@
-import com.sun.org.apache.xalan.internal.utils.XMLSecurityManager.Limit;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
@@ -7,42 +7,139 @@ import lombok.extern.log4j.Log4j2;
 @Log4j2
 public class Exchange {
 
-    private MarketOrderQueue buyMarketOrders;
-    private MarketOrderQueue sellMarketOrders;
-    private LimitOrderList buyLimitOrders;
-    private LimitOrderList sellLimitOrders;
-    private Map<Integer, Order> stopOrderList;
+    private Map<String, Integer> tickerIds;
+    private ArrayList<OrderBook> orderBooks;
+    private LastExecutedPrices lastExecutedPrices;
+    private StageLatencies stageLatencies;
+    private ExchangeMetrics metrics;
     private int date;
 
     public Exchange() {
-        this.buyMarketOrders = new MarketOrderQueue();
-        this.sellMarketOrders = new MarketOrderQueue();
-        this.buyLimitOrders = new LimitOrderList();
-        this.sellLimitOrders = new LimitOrderList();
-        this.stopOrderList = new HashMap<Integer, Order>();
+        this(new StageLatencies());
+    }
+
+    public Exchange(StageLatencies stageLatencies) {
+        this.tickerIds = new HashMap<String, Integer>();
+        this.orderBooks = new ArrayList<OrderBook>();
+        this.lastExecutedPrices = new LastExecutedPrices();
+        this.stageLatencies = stageLatencies;
+        this.metrics = new ExchangeMetrics(this.orderBooks);
         this.date = 1;
     }
 
     /**
-     * Take in newly created Order to determine whether there is a matching order which can be turned into an Agreement
-     * @param newOrder
+     * Registers a ticker with the exchange. Order books are created lazily, so registering is optional; an OrderBook
+     * will also be created the first time the id of a ticker is requested
+     * @param ticker
+     */
+    public void addTicker(String ticker) {
+        getTickerId(ticker);
+    }
+
+    /**
+     * Registers every ticker in the reference data, in id order, so that the exchange gives each ticker the same id as
+     * the reference data does
+     * @param referenceData
+     */
+    public void addTickers(ReferenceData referenceData) {
+        for (int tickerId = 0; tickerId < referenceData.getTickerCount(); tickerId++) {
+            String ticker = referenceData.getTicker(tickerId);
+            if (getTickerId(ticker) != tickerId) {
+                LOGGER.error("Ticker {} already registered with a different id", ticker);
+                throw new IllegalArgumentException();
+            }
+        }
+    }
+
+    /**
+     * Orders carry the id of their ticker so that the matching path can find the OrderBook by index. Tickers must all
+     * be registered before orders are matched on more than one thread, as registering a ticker adds an OrderBook
+     * @param ticker
      * @return
      */
-    public String findMatchingOrder(Order newOrder) {
-        Order matchedOrder = createDummyOrder();
-        if (newOrder.getType().equals("MARKET")) {
+    public int getTickerId(String ticker) {
+        Integer tickerId = this.tickerIds.get(ticker);
+        if (tickerId == null) {
+            LOGGER.debug("Creating order book for ticker: {}", ticker);
+            tickerId = this.orderBooks.size();
+            this.orderBooks.add(new OrderBook(ticker));
+            this.lastExecutedPrices.addTicker();
+            this.tickerIds.put(ticker, tickerId);
+        }
+        return tickerId;
+    }
+
+    private OrderBook getOrderBook(Order order) {
+        return this.orderBooks.get(order.getTickerId());
+    }
+
+    OrderBook getOrderBook(int tickerId) {
+        return this.orderBooks.get(tickerId);
+    }
+
+    public int getTickerCount() {
+        return this.orderBooks.size();
+    }
+
+    /**
+     * Read only view of the last executed price of every ticker, for use by market data consumers
+     * @return
+     */
+    public LastExecutedPriceView getLastExecutedPrices() {
+        return this.lastExecutedPrices;
+    }
+
+    /**
+     * Sets the last executed price of a ticker without a trade, when restoring a snapshot
+     * @param tickerId
+     * @param lastExecutedPrice
+     */
+    void restoreLastExecutedPrice(int tickerId, double lastExecutedPrice) {
+        this.lastExecutedPrices.updateLastExecutedPrice(tickerId, lastExecutedPrice);
+    }
+
+    private double getLastExecutedPrice(Order order) {
+        return this.lastExecutedPrices.getLastExecutedPrice(order.getTickerId());
+    }
+
+    /**
+     * Take in newly created Order to determine whether there is a matching order which can be turned into an Agreement.
+     * Every Agreement made is handed to agreementSink as soon as the trade is matched
+     * @param newOrder
+     * @param agreementSink
+     * @return the number of Agreements made
+     */
+    public int findMatchingOrder(Order newOrder, AgreementSink agreementSink) {
+        if (isDormantStopOrder(newOrder)) {
+            LOGGER.info("STOP ORDER Input, trigger price not yet reached");
+            addToStopOrderList(newOrder);
+            return 0;
+        }
+
+        Order matchedOrder = matchOrder(newOrder);
+        if (matchExists(matchedOrder)) {
+            return checkedNewOrderNowStopOrders(newOrder, matchedOrder, agreementSink);
+        } else {
+            noMatchFound(newOrder);
+            return 0;
+        }
+    }
+
+    private Order matchOrder(Order newOrder) {
+        Order matchedOrder = Order.NO_ORDER;
+        if (newOrder.getType() == OrderType.MARKET) {
             LOGGER.info("MARKET ORDER Input");
             matchedOrder = marketOrderInput(newOrder);
-        } else if (newOrder.getType().equals("LIMIT")) {
+        } else if (newOrder.getType() == OrderType.LIMIT) {
             LOGGER.info("LIMIT ORDER Input");
             matchedOrder = limitOrderInput(newOrder);
         }
+        return matchedOrder;
+    }
 
-        if (matchExists(matchedOrder)) {
-            return checkedNewOrderNowStopOrders(newOrder, matchedOrder);
-        } else {
-            return noMatchFound(newOrder);
-        }
+    private boolean isDormantStopOrder(Order newOrder) {
+        if (!newOrder.isStopOrder()) return false;
+        return !getOrderBook(newOrder).getStopOrders().isTriggered(newOrder, getLastExecutedPrice(newOrder));
     }
 
     /**
@@ -51,75 +148,75 @@ public class Exchange {
      * exchange
      * @param newOrder
      * @param matchedOrder
-     * @return
+     * @param agreementSink
+     * @return the number of Agreements made
      */
-    private String checkedNewOrderNowStopOrders(Order newOrder, Order matchedOrder) {
-        StringBuilder stringBuilder = new StringBuilder();
-        stringBuilder.append(matchedOrdersToString(newOrder, matchedOrder));
-        stringBuilder.append(checkForNewlyActivatedStopOrders());
-        LOGGER.info("Size of lists: LIMIT ORDER BUY {}, LIMIT ORDER SELL {}, MARKET ORDER BUY {}, MARKET ORDER SELL {}",
-            Integer.toString(buyLimitOrders.size()), Integer.toString(sellLimitOrders.size()) ,
-            Integer.toString(buyMarketOrders.size()), Integer.toString(sellMarketOrders.size()) );
-        return stringBuilder.toString();
+    private int checkedNewOrderNowStopOrders(Order newOrder, Order matchedOrder, AgreementSink agreementSink) {
+        agreementSink.onAgreement(createAgreement(newOrder, matchedOrder));
+        int agreementsMade = 1 + checkForNewlyActivatedStopOrders(newOrder, agreementSink);
+        OrderBook orderBook = getOrderBook(newOrder);
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("Size of {} lists: LIMIT ORDER BUY {}, LIMIT ORDER SELL {}, MARKET ORDER BUY {}, MARKET ORDER SELL {}",
+                orderBook.getTicker(),
+                Integer.toString(orderBook.getBuyLimitOrders().size()), Integer.toString(orderBook.getSellLimitOrders().size()),
+                Integer.toString(orderBook.getBuyMarketOrders().size()), Integer.toString(orderBook.getSellMarketOrders().size()));
+        }
+        return agreementsMade;
     }
 
-    private String matchedOrdersToString(Order newOrder, Order matchedOrder) {
-        ArrayList<Agreement> listOfAgreements = new ArrayList<Agreement>();
-
+    private Agreement createAgreement(Order newOrder, Order matchedOrder) {
         int matchQuantity = newOrder.getQuantity();
         double matchPrice = getMatchedPrice(newOrder, matchedOrder);
         updateLastExecutedPrices(newOrder, matchPrice);
 
-        if (newOrder.getDirection().equals("BUY")) {
-            Order buyOrder = newOrder;
-            Order sellOrder = matchedOrder;
-            Agreement newAgreement = Agreement.builder()
-                .buyCustomer(buyOrder.getCustomer())
-                .sellCustomer(sellOrder.getCustomer())
-                .ticker(newOrder.getTicker())
-                .matchQuantity(matchQuantity)
-                .matchPrice(matchPrice)
-                .dateOfAgreement(this.date)
-                .build();
-            return newAgreement.toString();
-        } else {
-            Order sellOrder = newOrder;
-            Order buyOrder = matchedOrder;
-
-            Agreement newAgreement = Agreement.builder()
-                .buyCustomer(buyOrder.getCustomer())
-                .sellCustomer(sellOrder.getCustomer())
-                .ticker(newOrder.getTicker())
-                .matchQuantity(matchQuantity)
-                .matchPrice(matchPrice)
-                .dateOfAgreement(this.date)
-                .build();
-            return newAgreement.toString();
+        Order buyOrder = matchedOrder;
+        Order sellOrder = newOrder;
+        if (newOrder.getDirection() == Direction.BUY) {
+            buyOrder = newOrder;
+            sellOrder = matchedOrder;
         }
 
+        // Made with the constructor the builder calls, so that only the Agreement is allocated, however the JIT inlines
+        Agreement newAgreement = new Agreement(buyOrder.getCustomer(), sellOrder.getCustomer(), newOrder.getTicker(),
+            newOrder.getTickerId(), matchQuantity, matchPrice, this.date);
+        this.metrics.agreementMade();
+        LOGGER.info("Output Trade: {}", newAgreement);
+        return newAgreement;
     }
 
-    private String checkForNewlyActivatedStopOrders() {
-        StringBuilder stringBuilder = new StringBuilder();
+    /**
+     * STOP orders activated by the new last executed price are taken off the ticker's stop order list and matched as
+     * ordinary orders; any that cannot be matched rest on the order book. A trade made by an activated order may in turn
+     * activate more STOP orders, which are appended to the same work list. Activated orders never return to the stop
+     * order list, so the cascade ends after at most one pass over the STOP orders resting when it started. Each
+     * OrderBook reuses its own work list between cascades, which is safe as cascades are never nested
+     * @param newOrder
+     * @param agreementSink
+     * @return the number of Agreements made by activated orders
+     */
+    private int checkForNewlyActivatedStopOrders(Order newOrder, AgreementSink agreementSink) {
+        long startTime = System.nanoTime();
+        int agreementsMade = 0;
         LOGGER.debug("Checking for newly activated STOP ORDERS");
-        for (Map.Entry<Integer, Order> entry : stopOrderList.entrySet()) {
-            Order value = entry.getValue();
-            Order pseudoOrder = createPseudoOrder(value);
-            String newlyMatchedOrder = findMatchingOrder(pseudoOrder);
-            if (!newlyMatchedOrder.equals("No Trades Matched")) {
-                stringBuilder.append('\n');
-                stringBuilder.append(newlyMatchedOrder);
-
-                String csvSplitBy = ",";
-                String[] csvLine = newlyMatchedOrder.split(csvSplitBy);
-                int buyOrderId = Integer.parseInt(csvLine[0]);
-                int sellOrderId = Integer.parseInt(csvLine[1]);
-                if (this.stopOrderList.containsKey(buyOrderId)) this.stopOrderList.remove(buyOrderId);
-                if (this.stopOrderList.containsKey(sellOrderId)) this.stopOrderList.remove(sellOrderId);
+        OrderBook orderBook = getOrderBook(newOrder);
+        StopOrderList stopOrders = orderBook.getStopOrders();
+        ArrayDeque<Order> activatedOrders = orderBook.getActivatedOrders();
+        stopOrders.popActivatedOrders(getLastExecutedPrice(newOrder), activatedOrders);
+
+        while (!activatedOrders.isEmpty()) {
+            Order activatedOrder = activatedOrders.poll();
+            Order matchedOrder = matchOrder(activatedOrder);
+            if (matchExists(matchedOrder)) {
+                agreementSink.onAgreement(createAgreement(activatedOrder, matchedOrder));
+                agreementsMade++;
+                stopOrders.popActivatedOrders(getLastExecutedPrice(newOrder), activatedOrders);
+            } else {
+                fillOrKill(activatedOrder);
             }
         }
 
-        return stringBuilder.toString();
+        this.stageLatencies.record(StageLatencies.Stage.STOP_CASCADE, startTime);
+        return agreementsMade;
     }
 
     private Order limitOrderInput(Order newOrder) {
@@ -141,44 +238,47 @@ public class Exchange {
             return limitMatchedOrder;
         }
         LOGGER.debug("No suitable trades matched in LIMIT ORDER list");
-        return createDummyOrder();
+        return Order.NO_ORDER;
     }
 
     private Order queryMarketOrderQueues(Order newOrder) {
-        if (newOrder.getDirection().equals("BUY")) {
+        OrderBook orderBook = getOrderBook(newOrder);
+        if (newOrder.getDirection() == Direction.BUY) {
             LOGGER.debug("BUY LIMIT ORDER input, look into SELL MARKET ORDER queue");
-            return sellMarketOrders.findMatchingMarketOrder(newOrder);
-        } else if (newOrder.getDirection().equals("SELL")) {
+            return orderBook.getSellMarketOrders().findMatchingMarketOrder();
+        } else if (newOrder.getDirection() == Direction.SELL) {
             LOGGER.debug("SELL LIMIT ORDER input, look into BUY MARKET ORDER queue");
-            return buyMarketOrders.findMatchingMarketOrder(newOrder);
+            return orderBook.getBuyMarketOrders().findMatchingMarketOrder();
         } else {
             //Error
-            return createDummyOrder();
+            return Order.NO_ORDER;
         }
     }
 
     private Order queryLimitOrderLists(Order newOrder) {
-        if (newOrder.getDirection().equals("BUY")) {
-            return this.sellLimitOrders.findMatchingLimitOrder(newOrder);
-        } else if (newOrder.getDirection().equals("SELL")) {
-            return this.buyLimitOrders.findMatchingLimitOrder(newOrder);
+        OrderBook orderBook = getOrderBook(newOrder);
+        if (newOrder.getDirection() == Direction.BUY) {
+            return orderBook.getSellLimitOrders().findMatchingLimitOrder(newOrder);
+        } else if (newOrder.getDirection() == Direction.SELL) {
+            return orderBook.getBuyLimitOrders().findMatchingLimitOrder(newOrder);
         } else {
             //Error
-            return createDummyOrder();
+            return Order.NO_ORDER;
         }
     }
 
     private void addOrderToExchange(Order newOrder) {
-        if (newOrder.getType().equals("MARKET")) addMarketOrderToExchange(newOrder);
-        else if (newOrder.getType().equals("LIMIT")) addLimitOrderToExchange(newOrder);
+        if (newOrder.getType() == OrderType.MARKET) addMarketOrderToExchange(newOrder);
+        else if (newOrder.getType() == OrderType.LIMIT) addLimitOrderToExchange(newOrder);
         else {
             //error
         }
     }
 
     private void addMarketOrderToExchange(Order newOrder) {
-        if (newOrder.getDirection().equals("BUY")) buyMarketOrders.addOrderToQueue(newOrder);
-        else if (newOrder.getDirection().equals("SELL")) sellMarketOrders.addOrderToQueue(newOrder);
+        OrderBook orderBook = getOrderBook(newOrder);
+        if (newOrder.getDirection() == Direction.BUY) orderBook.getBuyMarketOrders().addOrderToQueue(newOrder);
+        else if (newOrder.getDirection() == Direction.SELL) orderBook.getSellMarketOrders().addOrderToQueue(newOrder);
         else {
             //error
         }
@@ -186,8 +286,9 @@ public class Exchange {
     }
 
     private void addLimitOrderToExchange(Order newOrder) {
-        if (newOrder.getDirection().equals("BUY")) buyLimitOrders.addOrderToList(newOrder);
-        else if (newOrder.getDirection().equals("SELL")) sellLimitOrders.addOrderToList(newOrder);
+        OrderBook orderBook = getOrderBook(newOrder);
+        if (newOrder.getDirection() == Direction.BUY) orderBook.getBuyLimitOrders().addOrderToList(newOrder);
+        else if (newOrder.getDirection() == Direction.SELL) orderBook.getSellLimitOrders().addOrderToList(newOrder);
         else {
             //error
         }
@@ -195,68 +296,60 @@ public class Exchange {
     }
 
     public boolean matchExists(Order matchedOrder) {
-        if (matchedOrder.getOrderId() != createDummyOrder().getOrderId()) {
+        if (matchedOrder != Order.NO_ORDER) {
             LOGGER.info("ORDER successfully matched");
             return true;
         }
         return false;
     }
 
-    private static Order createPseudoOrder(Order newOrder){
-        LOGGER.debug("Creating pseudo Order object from existing order");
-        Order pseudoOrder = Order.builder()
-            .orderId(newOrder.getOrderId())
-            .direction(newOrder.getDirection())
-            .quantity(newOrder.getQuantity())
-            .ticker(newOrder.getTicker())
-            .type(newOrder.getType())
-            .limitPrice(newOrder.getLimitPrice())
-            .timeInForce("FOK")
-            .triggerPrice(newOrder.getTriggerPrice())
-            .build();
-
-        return pseudoOrder;
-    }
-
     private void addToStopOrderList(Order newOrder) {
-        if (newOrder.getTriggerPrice() != -1.0 && !newOrder.getTimeInForce().equals("FOK")) {
+        if (newOrder.getTimeInForce() != TimeInForce.FOK) {
             LOGGER.debug("Order added to stop order list");
-            this.stopOrderList.put(newOrder.getOrderId(), newOrder);
+            getOrderBook(newOrder).getStopOrders().addOrderToList(newOrder);
         }
     }
 
     private void fillOrKill(Order newOrder) {
-        if (!newOrder.getTimeInForce().equals("FOK")) addOrderToExchange(newOrder);
+        if (newOrder.getTimeInForce() != TimeInForce.FOK) addOrderToExchange(newOrder);
     }
 
-    private String noMatchFound(Order newOrder) {
+    private void noMatchFound(Order newOrder) {
         fillOrKill(newOrder);
-        addToStopOrderList(newOrder);
-        LOGGER.debug("Size of lists: LIMIT ORDER BUY {}, LIMIT ORDER SELL {}, MARKET ORDER BUY {}, MARKET ORDER SELL {}",
-            Integer.toString(buyLimitOrders.size()), Integer.toString(sellLimitOrders.size()) ,
-            Integer.toString(buyMarketOrders.size()), Integer.toString(sellMarketOrders.size()) );
-        return "No Trades Matched";
-    }
-
-    private Order createDummyOrder() {
-        Order order = Order.builder()
-            .orderId(-1)
-            .build();
-        return order;
+        OrderBook orderBook = getOrderBook(newOrder);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Size of {} lists: LIMIT ORDER BUY {}, LIMIT ORDER SELL {}, MARKET ORDER BUY {}, MARKET ORDER SELL {}",
+                orderBook.getTicker(),
+                Integer.toString(orderBook.getBuyLimitOrders().size()), Integer.toString(orderBook.getSellLimitOrders().size()),
+                Integer.toString(orderBook.getBuyMarketOrders().size()), Integer.toString(orderBook.getSellMarketOrders().size()));
+        }
     }
 
     private double getMatchedPrice(Order newOrder, Order matchedOrder) {
         double matchPrice = matchedOrder.getLimitPrice();
-        if (matchPrice == -1.0)  matchPrice = newOrder.getLimitPrice();
+        if (!matchedOrder.hasLimitPrice())  matchPrice = newOrder.getLimitPrice();
         return matchPrice;
     }
 
     private void updateLastExecutedPrices(Order newOrder, double lastExecutedPrice) {
-        this.buyMarketOrders.updateLastExecutedPrice(newOrder.getTicker(), lastExecutedPrice);
-        this.sellMarketOrders.updateLastExecutedPrice(newOrder.getTicker(), lastExecutedPrice);
-        this.buyLimitOrders.updateLastExecutedPrice(newOrder.getTicker(), lastExecutedPrice);
-        this.sellLimitOrders.updateLastExecutedPrice(newOrder.getTicker(), lastExecutedPrice);
-        LOGGER.info("Last executed price updated to: {}", lastExecutedPrice);
+        this.lastExecutedPrices.updateLastExecutedPrice(newOrder.getTickerId(), lastExecutedPrice);
+        if (LOGGER.isInfoEnabled()) LOGGER.info("Last executed price updated to: {}", lastExecutedPrice);
+    }
+
+    /**
+     * The latencies recorded by this exchange, and by the readers and writers which feed it
+     * @return
+     */
+    public StageLatencies getStageLatencies() {
+        return this.stageLatencies;
+    }
+
+    /**
+     * The counters and gauges of this exchange, which the readers and writers which feed it also update
+     * @return
+     */
+    public ExchangeMetrics getMetrics() {
+        return this.metrics;
     }
 
     public int getDate(){
@@ -0,0 +1,134 @@
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Counters and gauges describing the exchange while it runs. Every value is kept up to date as the engine works,
+ * so reading a metric never walks a list: the flow counters are LongAdders, which any thread may increment without
+ * allocating, and the book depth gauges read the sizes which the order lists already keep. Those sizes are read
+ * without locking the OrderBooks, so a scrape taken while orders are being matched may lag the matching thread.
+ * Binding to a MeterRegistry only registers functions which read these values; the engine never touches the
+ * registry itself. Rates, such as orders or trades per second, are derived from the counters by the scraper
+ */
+@Log4j2
+public class ExchangeMetrics implements MeterBinder {
+
+    private final List<OrderBook> orderBooks;
+    private final LongAdder ordersAccepted;
+    private final LongAdder[] ordersRejected;
+    private final LongAdder agreementsMade;
+    private final LongAdder settlementsCompleted;
+    private final AtomicLong pendingMissions;
+
+    /**
+     * @param orderBooks: the OrderBooks of the exchange, indexed by ticker id
+     */
+    public ExchangeMetrics(List<OrderBook> orderBooks) {
+        this.orderBooks = orderBooks;
+        this.ordersAccepted = new LongAdder();
+        this.ordersRejected = new LongAdder[RejectReason.values().length];
+        for (int i = 0; i < this.ordersRejected.length; i++) this.ordersRejected[i] = new LongAdder();
+        this.agreementsMade = new LongAdder();
+        this.settlementsCompleted = new LongAdder();
+        this.pendingMissions = new AtomicLong();
+    }
+
+    public void orderAccepted() {
+        this.ordersAccepted.increment();
+    }
+
+    public void orderRejected(RejectReason reason) {
+        this.ordersRejected[reason.ordinal()].increment();
+    }
+
+    public void agreementMade() {
+        this.agreementsMade.increment();
+    }
+
+    public void settlementCompleted() {
+        this.settlementsCompleted.increment();
+    }
+
+    public void setPendingMissions(long pendingMissions) {
+        this.pendingMissions.set(pendingMissions);
+    }
+
+    public long getOrdersAccepted() {
+        return this.ordersAccepted.sum();
+    }
+
+    public long getOrdersRejected(RejectReason reason) {
+        return this.ordersRejected[reason.ordinal()].sum();
+    }
+
+    public long getAgreementsMade() {
+        return this.agreementsMade.sum();
+    }
+
+    public long getSettlementsCompleted() {
+        return this.settlementsCompleted.sum();
+    }
+
+    public long getPendingMissions() {
+        return this.pendingMissions.get();
+    }
+
+    /**
+     * Registers every metric with the registry. A book depth gauge is registered for each OrderBook which exists when
+     * the metrics are bound, so every ticker must be registered with the Exchange first
+     * @param registry
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("exchange.orders.accepted", this.ordersAccepted, LongAdder::sum)
+            .description("Orders which passed validation and the inventory check and were sent for matching")
+            .register(registry);
+        for (RejectReason reason : RejectReason.values()) {
+            FunctionCounter.builder("exchange.orders.rejected", this.ordersRejected[reason.ordinal()], LongAdder::sum)
+                .description("Orders rejected before matching")
+                .tag("reason", reason.name())
+                .register(registry);
+        }
+        FunctionCounter.builder("exchange.agreements", this.agreementsMade, LongAdder::sum)
+            .description("Trades matched, including trades made by activated STOP orders")
+            .register(registry);
+        FunctionCounter.builder("exchange.settlements", this.settlementsCompleted, LongAdder::sum)
+            .description("Agreements settled")
+            .register(registry);
+        Gauge.builder("exchange.missions.pending", this.pendingMissions, AtomicLong::get)
+            .description("Agreements written to the missions file and still awaiting settlement")
+            .register(registry);
+
+        for (OrderBook orderBook : this.orderBooks) bindOrderBook(registry, orderBook);
+        LOGGER.info("Exchange metrics bound for {} order books", this.orderBooks.size());
+    }
+
+    private static void bindOrderBook(MeterRegistry registry, OrderBook orderBook) {
+        String ticker = orderBook.getTicker();
+        for (Direction side : Direction.values()) {
+            LimitOrderList limitOrders = orderBook.getSellLimitOrders();
+            MarketOrderQueue marketOrders = orderBook.getSellMarketOrders();
+            if (side == Direction.BUY) {
+                limitOrders = orderBook.getBuyLimitOrders();
+                marketOrders = orderBook.getBuyMarketOrders();
+            }
+            Gauge.builder("exchange.book.depth", limitOrders, LimitOrderList::size)
+                .description("Resting orders on one side of an order book")
+                .tags("ticker", ticker, "side", side.name(), "type", "LIMIT")
+                .register(registry);
+            Gauge.builder("exchange.book.depth", marketOrders, MarketOrderQueue::size)
+                .description("Resting orders on one side of an order book")
+                .tags("ticker", ticker, "side", side.name(), "type", "MARKET")
+                .register(registry);
+        }
+        Gauge.builder("exchange.stop.orders", orderBook.getStopOrders(), StopOrderList::size)
+            .description("Dormant STOP orders waiting for their trigger price")
+            .tag("ticker", ticker)
+            .register(registry);
+    }
+}
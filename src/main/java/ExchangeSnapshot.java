@@ -0,0 +1,383 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import lombok.Value;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Copy of everything a restart would otherwise rebuild by replaying orders: the market day, the resting and STOP
+ * orders and last executed price of every ticker, the order ids already used, the missions awaiting settlement and
+ * the cash and shares of every Account held by a Broker/Dealer.
+ * Taking a snapshot is split in two. Capturing copies the state into memory, which only copies references to the
+ * orders and missions, as they never change, and copies the balances of each Account, so matching only has to stop
+ * while the state is captured. Writing the binary file can then run on any thread while matching carries on. The
+ * file is written to a temporary file which then replaces the snapshot, so a snapshot is never left half written.
+ * A snapshot is restored into an Exchange which has matched no orders, built from the same reference data
+ */
+@Log4j2
+public class ExchangeSnapshot {
+
+    private static final int MAGIC = 0x45584353;
+    private static final int VERSION = 2;
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private final int date;
+    private final double[] lastExecutedPrices;
+    private final ArrayList<BookState> books;
+    private final int[] orderIds;
+    private final ArrayList<Agreement> pendingMissions;
+    private final ArrayList<AccountState> brokerDealerAccounts;
+    private final ArrayList<ArrayList<AccountState>> customerAccounts;
+
+    private ExchangeSnapshot(int date, double[] lastExecutedPrices, ArrayList<BookState> books, int[] orderIds,
+        ArrayList<Agreement> pendingMissions, ArrayList<AccountState> brokerDealerAccounts,
+        ArrayList<ArrayList<AccountState>> customerAccounts) {
+        this.date = date;
+        this.lastExecutedPrices = lastExecutedPrices;
+        this.books = books;
+        this.orderIds = orderIds;
+        this.pendingMissions = pendingMissions;
+        this.brokerDealerAccounts = brokerDealerAccounts;
+        this.customerAccounts = customerAccounts;
+    }
+
+    /**
+     * Copies the state of the exchange into memory. No orders may be matched, and no missions settled, while it runs
+     * @param exchange
+     * @param referenceData
+     * @param orderIdSet
+     * @param pendingMissions: the missions which have not yet been settled
+     * @return
+     */
+    public static ExchangeSnapshot capture(Exchange exchange, ReferenceData referenceData, Set<Integer> orderIdSet,
+        List<Agreement> pendingMissions) {
+        long startTime = System.nanoTime();
+        int tickerCount = exchange.getTickerCount();
+        double[] lastExecutedPrices = new double[tickerCount];
+        ArrayList<BookState> books = new ArrayList<BookState>(tickerCount);
+        for (int tickerId = 0; tickerId < tickerCount; tickerId++) {
+            lastExecutedPrices[tickerId] = exchange.getLastExecutedPrices().getLastExecutedPrice(tickerId);
+            books.add(BookState.capture(exchange.getOrderBook(tickerId)));
+        }
+
+        int[] orderIds = new int[orderIdSet.size()];
+        int i = 0;
+        for (int orderId : orderIdSet) orderIds[i++] = orderId;
+
+        ArrayList<AccountState> brokerDealerAccounts = new ArrayList<AccountState>();
+        ArrayList<ArrayList<AccountState>> customerAccounts = new ArrayList<ArrayList<AccountState>>();
+        for (int brokerDealerId = 0; brokerDealerId < referenceData.getBrokerDealerCount(); brokerDealerId++) {
+            BrokerDealer brokerDealer = referenceData.getBrokerDealer(brokerDealerId);
+            brokerDealerAccounts.add(AccountState.capture(brokerDealer.getBrokerDealerAccount()));
+            ArrayList<AccountState> accounts = new ArrayList<AccountState>();
+            for (Account account : brokerDealer.getCustomerAccounts()) accounts.add(AccountState.capture(account));
+            customerAccounts.add(accounts);
+        }
+
+        ExchangeSnapshot snapshot = new ExchangeSnapshot(exchange.getDate(), lastExecutedPrices, books, orderIds,
+            new ArrayList<Agreement>(pendingMissions), brokerDealerAccounts, customerAccounts);
+        LOGGER.info("Captured snapshot of day {} in {} microseconds", exchange.getDate(),
+            (System.nanoTime() - startTime) / 1000);
+        return snapshot;
+    }
+
+    /**
+     * Writes the snapshot to a temporary file alongside path, then moves it over path
+     * @param path
+     * @throws IOException
+     */
+    public void writeTo(Path path) throws IOException {
+        Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(
+            new BufferedOutputStream(Files.newOutputStream(temporaryPath), BUFFER_BYTES))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(this.date);
+
+            output.writeInt(this.books.size());
+            for (int tickerId = 0; tickerId < this.books.size(); tickerId++) {
+                output.writeDouble(this.lastExecutedPrices[tickerId]);
+                this.books.get(tickerId).write(output);
+            }
+
+            output.writeInt(this.orderIds.length);
+            for (int orderId : this.orderIds) output.writeInt(orderId);
+
+            output.writeInt(this.pendingMissions.size());
+            for (Agreement mission : this.pendingMissions) writeAgreement(output, mission);
+
+            output.writeInt(this.brokerDealerAccounts.size());
+            for (int brokerDealerId = 0; brokerDealerId < this.brokerDealerAccounts.size(); brokerDealerId++) {
+                this.brokerDealerAccounts.get(brokerDealerId).write(output);
+                ArrayList<AccountState> accounts = this.customerAccounts.get(brokerDealerId);
+                output.writeInt(accounts.size());
+                for (AccountState account : accounts) AccountState.writeOptional(output, account);
+            }
+        }
+        Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LOGGER.info("Wrote snapshot of day {} to {}", this.date, path);
+    }
+
+    /**
+     * @param path
+     * @param referenceData: the reference data of the exchange which took the snapshot
+     * @return
+     * @throws IOException
+     */
+    public static ExchangeSnapshot readFrom(Path path, ReferenceData referenceData) throws IOException {
+        try (DataInputStream input = new DataInputStream(
+            new BufferedInputStream(Files.newInputStream(path), BUFFER_BYTES))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                LOGGER.error("Not a snapshot, or a snapshot of another version: {}", path);
+                throw new IllegalArgumentException();
+            }
+            int date = input.readInt();
+
+            int tickerCount = input.readInt();
+            double[] lastExecutedPrices = new double[tickerCount];
+            ArrayList<BookState> books = new ArrayList<BookState>(tickerCount);
+            for (int tickerId = 0; tickerId < tickerCount; tickerId++) {
+                lastExecutedPrices[tickerId] = input.readDouble();
+                books.add(BookState.read(input, referenceData));
+            }
+
+            int[] orderIds = new int[input.readInt()];
+            for (int i = 0; i < orderIds.length; i++) orderIds[i] = input.readInt();
+
+            int missionCount = input.readInt();
+            ArrayList<Agreement> pendingMissions = new ArrayList<Agreement>(missionCount);
+            for (int i = 0; i < missionCount; i++) pendingMissions.add(readAgreement(input, referenceData));
+
+            int brokerDealerCount = input.readInt();
+            ArrayList<AccountState> brokerDealerAccounts = new ArrayList<AccountState>(brokerDealerCount);
+            ArrayList<ArrayList<AccountState>> customerAccounts = new ArrayList<ArrayList<AccountState>>();
+            for (int brokerDealerId = 0; brokerDealerId < brokerDealerCount; brokerDealerId++) {
+                brokerDealerAccounts.add(AccountState.read(input));
+                int accountCount = input.readInt();
+                ArrayList<AccountState> accounts = new ArrayList<AccountState>(accountCount);
+                for (int i = 0; i < accountCount; i++) accounts.add(AccountState.readOptional(input));
+                customerAccounts.add(accounts);
+            }
+
+            LOGGER.info("Read snapshot of day {} from {}", date, path);
+            return new ExchangeSnapshot(date, lastExecutedPrices, books, orderIds, pendingMissions,
+                brokerDealerAccounts, customerAccounts);
+        }
+    }
+
+    /**
+     * Restores the exchange, the order ids and the Accounts to the state they were in when the snapshot was captured
+     * @param exchange: must have matched no orders, and have the tickers of the exchange which took the snapshot
+     * @param referenceData
+     * @param orderIdSet
+     */
+    public void restoreTo(Exchange exchange, ReferenceData referenceData, Collection<Integer> orderIdSet) {
+        if (exchange.getTickerCount() != this.books.size()
+            || referenceData.getBrokerDealerCount() != this.brokerDealerAccounts.size()) {
+            LOGGER.error("Snapshot of {} tickers and {} Broker/Dealers does not fit the reference data",
+                this.books.size(), this.brokerDealerAccounts.size());
+            throw new IllegalArgumentException();
+        }
+
+        while (exchange.getDate() < this.date) exchange.incrementDate();
+        for (int tickerId = 0; tickerId < this.books.size(); tickerId++) {
+            exchange.restoreLastExecutedPrice(tickerId, this.lastExecutedPrices[tickerId]);
+            this.books.get(tickerId).restoreTo(exchange.getOrderBook(tickerId));
+        }
+        for (int orderId : this.orderIds) orderIdSet.add(orderId);
+
+        for (int brokerDealerId = 0; brokerDealerId < this.brokerDealerAccounts.size(); brokerDealerId++) {
+            BrokerDealer brokerDealer = referenceData.getBrokerDealer(brokerDealerId);
+            this.brokerDealerAccounts.get(brokerDealerId).restoreTo(brokerDealer.getBrokerDealerAccount());
+            ArrayList<AccountState> accounts = this.customerAccounts.get(brokerDealerId);
+            for (int customerId = 0; customerId < accounts.size(); customerId++) {
+                if (accounts.get(customerId) == null) continue;
+                accounts.get(customerId).restoreTo(brokerDealer.getCustomerAccounts().get(customerId));
+            }
+        }
+        LOGGER.info("Restored snapshot of day {}", this.date);
+    }
+
+    public int getDate() {
+        return this.date;
+    }
+
+    /**
+     * @return a copy of the missions which had not been settled when the snapshot was captured
+     */
+    public ArrayList<Agreement> getPendingMissions() {
+        return new ArrayList<Agreement>(this.pendingMissions);
+    }
+
+    private static void writeOrder(DataOutputStream output, Order order) throws IOException {
+        output.writeInt(order.getOrderId());
+        output.writeInt(order.getCustomer().getId());
+        output.writeInt(order.getTickerId());
+        output.writeInt(order.getQuantity());
+        output.writeByte(order.getDirection().ordinal());
+        output.writeByte(order.getType().ordinal());
+        output.writeByte(order.getTimeInForce().ordinal());
+        output.writeDouble(order.getLimitPrice());
+        output.writeDouble(order.getTriggerPrice());
+    }
+
+    private static Order readOrder(DataInputStream input, ReferenceData referenceData) throws IOException {
+        int orderId = input.readInt();
+        Customer customer = referenceData.getCustomer(input.readInt());
+        int tickerId = input.readInt();
+        int quantity = input.readInt();
+        Direction direction = Direction.values()[input.readByte()];
+        OrderType type = OrderType.values()[input.readByte()];
+        TimeInForce timeInForce = TimeInForce.values()[input.readByte()];
+        double limitPrice = input.readDouble();
+        double triggerPrice = input.readDouble();
+
+        return Order.builder()
+            .customer(customer)
+            .orderId(orderId)
+            .direction(direction)
+            .quantity(quantity)
+            .ticker(referenceData.getTicker(tickerId))
+            .tickerId(tickerId)
+            .type(type)
+            .limitPrice(limitPrice)
+            .timeInForce(timeInForce)
+            .triggerPrice(triggerPrice)
+            .build();
+    }
+
+    private static void writeAgreement(DataOutputStream output, Agreement agreement) throws IOException {
+        output.writeInt(agreement.getBuyCustomer().getId());
+        output.writeInt(agreement.getSellCustomer().getId());
+        output.writeInt(agreement.getTickerId());
+        output.writeInt(agreement.getMatchQuantity());
+        output.writeDouble(agreement.getMatchPrice());
+        output.writeInt(agreement.getDateOfAgreement());
+    }
+
+    private static Agreement readAgreement(DataInputStream input, ReferenceData referenceData) throws IOException {
+        Customer buyCustomer = referenceData.getCustomer(input.readInt());
+        Customer sellCustomer = referenceData.getCustomer(input.readInt());
+        int tickerId = input.readInt();
+        int matchQuantity = input.readInt();
+        double matchPrice = input.readDouble();
+        int dateOfAgreement = input.readInt();
+
+        return Agreement.builder()
+            .buyCustomer(buyCustomer)
+            .sellCustomer(sellCustomer)
+            .ticker(referenceData.getTicker(tickerId))
+            .tickerId(tickerId)
+            .matchQuantity(matchQuantity)
+            .matchPrice(matchPrice)
+            .dateOfAgreement(dateOfAgreement)
+            .build();
+    }
+
+    private static void writeOrders(DataOutputStream output, ArrayList<Order> orders) throws IOException {
+        output.writeInt(orders.size());
+        for (Order order : orders) writeOrder(output, order);
+    }
+
+    private static ArrayList<Order> readOrders(DataInputStream input, ReferenceData referenceData) throws IOException {
+        int orderCount = input.readInt();
+        ArrayList<Order> orders = new ArrayList<Order>(orderCount);
+        for (int i = 0; i < orderCount; i++) orders.add(readOrder(input, referenceData));
+        return orders;
+    }
+
+    /**
+     * The orders of one OrderBook, each list in the order which rebuilds it when the orders are added again
+     */
+    @Value
+    private static class BookState {
+        private final ArrayList<Order> buyMarketOrders;
+        private final ArrayList<Order> sellMarketOrders;
+        private final ArrayList<Order> buyLimitOrders;
+        private final ArrayList<Order> sellLimitOrders;
+        private final ArrayList<Order> stopOrders;
+
+        private static BookState capture(OrderBook orderBook) {
+            BookState bookState = new BookState(new ArrayList<Order>(), new ArrayList<Order>(),
+                new ArrayList<Order>(), new ArrayList<Order>(), new ArrayList<Order>());
+            orderBook.getBuyMarketOrders().forEachOrder(bookState.buyMarketOrders::add);
+            orderBook.getSellMarketOrders().forEachOrder(bookState.sellMarketOrders::add);
+            orderBook.getBuyLimitOrders().forEachOrder(bookState.buyLimitOrders::add);
+            orderBook.getSellLimitOrders().forEachOrder(bookState.sellLimitOrders::add);
+            orderBook.getStopOrders().forEachOrder(bookState.stopOrders::add);
+            return bookState;
+        }
+
+        private void restoreTo(OrderBook orderBook) {
+            for (Order order : this.buyMarketOrders) orderBook.getBuyMarketOrders().addOrderToQueue(order);
+            for (Order order : this.sellMarketOrders) orderBook.getSellMarketOrders().addOrderToQueue(order);
+            for (Order order : this.buyLimitOrders) orderBook.getBuyLimitOrders().addOrderToList(order);
+            for (Order order : this.sellLimitOrders) orderBook.getSellLimitOrders().addOrderToList(order);
+            for (Order order : this.stopOrders) orderBook.getStopOrders().addOrderToList(order);
+        }
+
+        private void write(DataOutputStream output) throws IOException {
+            writeOrders(output, this.buyMarketOrders);
+            writeOrders(output, this.sellMarketOrders);
+            writeOrders(output, this.buyLimitOrders);
+            writeOrders(output, this.sellLimitOrders);
+            writeOrders(output, this.stopOrders);
+        }
+
+        private static BookState read(DataInputStream input, ReferenceData referenceData) throws IOException {
+            return new BookState(readOrders(input, referenceData), readOrders(input, referenceData),
+                readOrders(input, referenceData), readOrders(input, referenceData), readOrders(input, referenceData));
+        }
+    }
+
+    /**
+     * The balances of one Account. Customers of other prime brokers have no Account, which is captured as null
+     */
+    @Value
+    private static class AccountState {
+        /** In minor units */
+        private final long cash;
+        private final int[] stock;
+
+        private static AccountState capture(Account account) {
+            if (account == null) return null;
+            return new AccountState(account.getCashInventory(), account.copyStockInventory());
+        }
+
+        private void restoreTo(Account account) {
+            account.restore(this.cash, this.stock);
+        }
+
+        private void write(DataOutputStream output) throws IOException {
+            output.writeLong(this.cash);
+            output.writeInt(this.stock.length);
+            for (int shares : this.stock) output.writeInt(shares);
+        }
+
+        private static AccountState read(DataInputStream input) throws IOException {
+            long cash = input.readLong();
+            int[] stock = new int[input.readInt()];
+            for (int i = 0; i < stock.length; i++) stock[i] = input.readInt();
+            return new AccountState(cash, stock);
+        }
+
+        private static void writeOptional(DataOutputStream output, AccountState account) throws IOException {
+            output.writeBoolean(account != null);
+            if (account != null) account.write(output);
+        }
+
+        private static AccountState readOptional(DataInputStream input) throws IOException {
+            if (!input.readBoolean()) return null;
+            return read(input);
+        }
+    }
+}
@@ -2,13 +2,14 @@ import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.HashSet;
 import lombok.extern.log4j.Log4j2;
 
 @Log4j2
 public final class InitialiseEntities {
 
+    /** Directory holding the reference data files read by main */
+    public static final String PROGRAM_ARGUMENTS = "src/main/resources/Program Arguments";
+
     /**
      * Utility class used for initialising Customers and Broker/Dealers as each has a unique relationship a client,
      * which must be predefined before orders are added to the exchange. This is so that custodial and execution duties
@@ -17,13 +18,37 @@ public final class InitialiseEntities {
     private InitialiseEntities(){ }
 
     /**
-     * Initialises Broker/Dealers: reads a csv of list of Broker Dealers and their cash and stock inventories
+     * Loads the tickers, then the Broker/Dealers and then the Customers, as the stock inventories of both refer to
+     * tickers and each Customer refers to its Broker/Dealers
+     * @return
+     */
+    public static ReferenceData loadReferenceData(){
+        return loadReferenceData(PROGRAM_ARGUMENTS);
+    }
+
+    /**
+     * @param directory: holding ListOfTickers.csv, ListOfBrokerDealers.csv and ListOfCustomers.csv
      * @return
      */
-    public static HashMap<String, BrokerDealer> addBrokerDealers(){
+    public static ReferenceData loadReferenceData(String directory){
+        ReferenceData referenceData = new ReferenceData();
+        addTickers(referenceData, directory);
+        addBrokerDealers(referenceData, directory);
+        addCustomers(referenceData, directory);
+        return referenceData;
+    }
+
+    /**
+     * Initialises Broker/Dealers: reads a csv of list of Broker Dealers and their cash and stock inventories
+     * @param referenceData
+     */
+    public static void addBrokerDealers(ReferenceData referenceData){
+        addBrokerDealers(referenceData, PROGRAM_ARGUMENTS);
+    }
+
+    public static void addBrokerDealers(ReferenceData referenceData, String directory){
         LOGGER.info("Initialising Broker/Dealer entities");
-        HashMap<String, BrokerDealer> brokerDealersHashMap = new HashMap<String, BrokerDealer>();
-        String brokerDealerCsvFile = "src/main/resources/Program Arguments/ListOfBrokerDealers.csv";
+        String brokerDealerCsvFile = directory + "/ListOfBrokerDealers.csv";
         BufferedReader br = null;
         String line = "";
         try {
@@ -37,8 +62,8 @@ public final class InitialiseEntities {
                     continue;
                 }
 
-                BrokerDealer brokerDealer = extractBrokerDealers(line);
-                brokerDealersHashMap.put(brokerDealer.getName(), brokerDealer);
+                BrokerDealer brokerDealer = extractBrokerDealers(line, referenceData);
+                referenceData.addBrokerDealer(brokerDealer);
             }
         } catch (FileNotFoundException e) {
             e.printStackTrace();
@@ -54,11 +79,9 @@ public final class InitialiseEntities {
                 }
             }
         }
-
-        return brokerDealersHashMap;
     }
 
-    private static BrokerDealer extractBrokerDealers(String inputLine){
+    private static BrokerDealer extractBrokerDealers(String inputLine, ReferenceData referenceData){
         String csvSplitBy = ",";
         String[] csvLine = inputLine.split(csvSplitBy);
 
@@ -71,7 +94,8 @@ public final class InitialiseEntities {
             .build();
 
         LOGGER.debug("Creating new BrokerDealer object from extracted row data");
-        BrokerDealer brokerDealer = new BrokerDealer(initialCashAndStock);
+        BrokerDealer brokerDealer = new BrokerDealer(referenceData.nextBrokerDealerId(), initialCashAndStock,
+            referenceData);
         LOGGER.debug("New BrokerDealer object created from extracted row data, {}", brokerDealer.toString());
 
         return brokerDealer;
@@ -80,13 +104,16 @@ public final class InitialiseEntities {
     /**
      * Initialises Customers: reads a csv of list of customers, with their prime broker, executing broker, and
      * cash/stock inventories
-     * @return
+     * @param referenceData: must already hold the Broker/Dealers
      */
-    public static HashMap<String, Customer> addCustomers(HashMap<String, BrokerDealer> brokerDealersHashMap){
+    public static void addCustomers(ReferenceData referenceData){
+        addCustomers(referenceData, PROGRAM_ARGUMENTS);
+    }
+
+    public static void addCustomers(ReferenceData referenceData, String directory){
         LOGGER.info("Initialising Customer entities");
-        HashMap<String, Customer> customerHashMap = new HashMap<String, Customer>();
 
-        String customerCsvFile = "src/main/resources/Program Arguments/ListOfCustomers.csv";
+        String customerCsvFile = directory + "/ListOfCustomers.csv";
         BufferedReader br = null;
         String line = "";
         try {
@@ -100,8 +127,8 @@ public final class InitialiseEntities {
                     continue;
                 }
 
-                Customer customer = extractCustomers(line, brokerDealersHashMap);
-                customerHashMap.put(customer.getName(), customer);
+                Customer customer = extractCustomers(line, referenceData);
+                referenceData.addCustomer(customer);
             }
         } catch (FileNotFoundException e) {
             e.printStackTrace();
@@ -117,11 +144,9 @@ public final class InitialiseEntities {
                 }
             }
         }
-
-        return customerHashMap;
     }
 
-    private static Customer extractCustomers(String inputLine, HashMap<String, BrokerDealer> brokerDealersHashMap){
+    private static Customer extractCustomers(String inputLine, ReferenceData referenceData){
         String csvSplitBy = ",";
         String[] csvLine = inputLine.split(csvSplitBy);
 
@@ -146,17 +171,25 @@ public final class InitialiseEntities {
             .build();
 
         LOGGER.debug("Creating new Customer object from extracted row data");
-        Customer customer = new Customer(customerCsvFields, brokerDealersHashMap, initialCashAndStock);
+        Customer customer = new Customer(referenceData.nextCustomerId(), customerCsvFields, referenceData,
+            initialCashAndStock);
         LOGGER.debug("New Order object Customer from extracted row data, {}", customer.toString());
 
 
         return customer;
     }
 
-    public static HashSet<String> addTickers(){
+    /**
+     * Initialises tickers: reads a csv of the tickers traded on the exchange
+     * @param referenceData
+     */
+    public static void addTickers(ReferenceData referenceData){
+        addTickers(referenceData, PROGRAM_ARGUMENTS);
+    }
+
+    public static void addTickers(ReferenceData referenceData, String directory){
         LOGGER.info("Initialising tickers");
-        HashSet<String> tickerSet = new HashSet<>();
-        String tickerCsvFile = "src/main/resources/Program Arguments/ListOfTickers.csv";
+        String tickerCsvFile = directory + "/ListOfTickers.csv";
         BufferedReader br = null;
         String line = "";
         try {
@@ -170,7 +203,7 @@ public final class InitialiseEntities {
                     continue;
                 }
                 String ticker = line;
-                tickerSet.add(ticker);
+                referenceData.addTicker(ticker);
                 LOGGER.debug("Creating new ticker: {}", ticker);
             }
         } catch (FileNotFoundException e) {
@@ -187,7 +220,5 @@ public final class InitialiseEntities {
                 }
             }
         }
-
-        return tickerSet;
     }
 }
@@ -0,0 +1,8 @@
+public interface LastExecutedPriceView {
+
+    /**
+     * @param tickerId: as given by Exchange.getTickerId
+     * @return the price of the last trade in the ticker, or -1.0 if it has not traded yet
+     */
+    double getLastExecutedPrice(int tickerId);
+}
@@ -0,0 +1,38 @@
+import java.util.Arrays;
+
+/**
+ * The last executed price of every ticker on the exchange, indexed by ticker id. There is one table per Exchange,
+ * shared by every trigger check, so there is a single copy of each price to update when a trade is made.
+ * Tickers are only added while registering, so the table never grows while orders are matched on more than one
+ * thread; each price is only written by the thread which matches its ticker. A reader on any other thread may see
+ * a price which has since been replaced
+ */
+public class LastExecutedPrices implements LastExecutedPriceView {
+
+    public static final double NOT_EXECUTED = -1.0;
+
+    private double[] prices;
+    private int tickerCount;
+
+    public LastExecutedPrices() {
+        this.prices = new double[16];
+        this.tickerCount = 0;
+    }
+
+    /**
+     * Adds a slot for the next ticker id, which has not traded yet
+     */
+    public void addTicker() {
+        if (this.tickerCount == this.prices.length) this.prices = Arrays.copyOf(this.prices, this.tickerCount * 2);
+        this.prices[this.tickerCount] = NOT_EXECUTED;
+        this.tickerCount++;
+    }
+
+    public double getLastExecutedPrice(int tickerId) {
+        return this.prices[tickerId];
+    }
+
+    void updateLastExecutedPrice(int tickerId, double lastExecutedPrice) {
+        this.prices[tickerId] = lastExecutedPrice;
+    }
+}
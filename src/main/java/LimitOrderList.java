@@ -1,127 +1,75 @@
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.function.Consumer;
 import lombok.extern.log4j.Log4j2;
 
+/**
+ * Resting LIMIT orders for a single ticker: price levels are kept in ascending price order, and each level is a
+ * FIFO queue so that orders at the same price are matched in the order in which they arrived
+ */
 @Log4j2
-public class LimitOrderList extends TriggerRules {
-    protected LinkedList<Order> limitOrderList;
-    private HashMap<String, Double> lastExecutedPriceMap;
+public class LimitOrderList {
+
+    private final PriceLevels priceLevels;
 
     public LimitOrderList() {
-        this.limitOrderList = new LinkedList<Order>();
-        this.lastExecutedPriceMap = new HashMap<String, Double>();
+        this.priceLevels = new PriceLevels();
     }
 
     public void addOrderToList(Order newOrder) {
-        this.limitOrderList.add(newOrder);
-    }
-
-    private void removeOrderFromList(int indexForRemoval) {
-        this.limitOrderList.remove(indexForRemoval);
+        this.priceLevels.add(newOrder.getLimitPrice(), newOrder);
     }
 
     public int size() {
-        return limitOrderList.size();
-    }
-
-    public boolean matchingOrderFound(int indexForRemoval) {
-        if (indexForRemoval != -1) return true;
-        return false;
-    }
-
-    private double setStartingPrice(Order newOrder) {
-        if (newOrder.getDirection().equals("SELL")) return Double.MIN_VALUE;
-        else if (newOrder.getDirection().equals("BUY")) return Double.MAX_VALUE;
-        else return 0.0;
-    }
-
-    private boolean checkTickerMatch(PotentialMatchedOrders potentialMatchedOrders) {
-        if (potentialMatchedOrders.getNewOrder().getTicker()
-            .equals(potentialMatchedOrders.getMatchedOrder().getTicker())) return true;
-        return false;
-    }
-
+        return this.priceLevels.size();
+    }
+
+    /**
+     * Visits every resting order in ascending price order, and in order of arrival within a price, so that adding the
+     * orders to an empty list in the same order rebuilds this list
+     * @param action
+     */
+    public void forEachOrder(Consumer<Order> action) {
+        this.priceLevels.forEachOrder(action);
+    }
+
+    /**
+     * BUY orders are matched against the lowest priced SELL orders first, SELL orders against the highest priced BUY
+     * orders first
+     * @param newOrderDirection
+     * @return
+     */
+    private double bestPrice(Direction newOrderDirection) {
+        if (newOrderDirection == Direction.SELL) return this.priceLevels.highestPrice();
+        return this.priceLevels.lowestPrice();
+    }
+
+    /**
+     * STOP orders only join the list once activated, so the oldest order at the best price level is always the match,
+     * provided that level satisfies the limit price of the new order
+     * @param newOrder
+     * @return
+     */
     public Order findMatchingLimitOrder(Order newOrder) {
-        double bestPrice = setStartingPrice(newOrder);
-        Order matchedOrder = createDummyOrder();
-        int index = 0;
-        int indexForRemoval = -1;
-        double oldPrice = bestPrice;
-        for (Order order : this.limitOrderList) {
-            PotentialMatchedOrders potentialMatchedOrders = PotentialMatchedOrders.builder()
-                .newOrder(newOrder)
-                .matchedOrder(order)
-                .bestPrice(bestPrice)
-                .build();
-            if (checkTickerMatch(potentialMatchedOrders)) {
-
-            bestPrice = marketOrLimitOrderInput(potentialMatchedOrders);
-            }
-            if (bestPrice != oldPrice) { // An updated bestPrice indicates that a more optimum match has been found
-                indexForRemoval = index;
-                matchedOrder = order;
-            }
-            index++;
-            oldPrice = bestPrice;
+        if (this.priceLevels.isEmpty()) return Order.NO_ORDER;
+        double bestPrice = bestPrice(newOrder.getDirection());
+        if (!isLimitPriceSatisfied(newOrder.getType(), newOrder.getDirection(), newOrder.getLimitPrice(), bestPrice)) {
+            return Order.NO_ORDER;
         }
-        if (matchingOrderFound(indexForRemoval)) removeOrderFromList(indexForRemoval);
-        return matchedOrder;
-    }
 
-    private double marketOrLimitOrderInput(PotentialMatchedOrders potentialMatchedOrders) {
-        if (potentialMatchedOrders.getNewOrder().getType().equals("LIMIT")) return limitOrderBuyOrSell(potentialMatchedOrders);
-        else if (potentialMatchedOrders.getNewOrder().getType().equals("MARKET")) return marketOrderBuyOrSell(potentialMatchedOrders);
-        else return potentialMatchedOrders.getBestPrice();
+        if (newOrder.getDirection() == Direction.SELL) return this.priceLevels.pollHighest();
+        return this.priceLevels.pollLowest();
     }
 
-    private double limitOrderBuyOrSell(PotentialMatchedOrders potentialMatchedOrders) {
-        if (potentialMatchedOrders.getNewOrder().getDirection().equals("SELL")) return sellLimitOrderBestPrice(potentialMatchedOrders);
-        else if (potentialMatchedOrders.getNewOrder().getDirection().equals("BUY")) return buyLimitOrderBestPrice(potentialMatchedOrders);
-        else return potentialMatchedOrders.getBestPrice();
+    private static boolean isLimitPriceSatisfied(OrderType type, Direction direction, double limitPrice,
+        double restingPrice) {
+        if (type == OrderType.MARKET) return true;
+        else if (type == OrderType.LIMIT) return limitOrderBuyOrSell(direction, limitPrice, restingPrice);
+        else return false;
     }
 
-    private double sellLimitOrderBestPrice(PotentialMatchedOrders potentialMatchedOrders) {
-        if (isSellLimitPriceSatisfied(potentialMatchedOrders) && triggerPriceSatisfied(potentialMatchedOrders) ) {
-            return Double.max(potentialMatchedOrders.getMatchedOrder().getLimitPrice(), potentialMatchedOrders.getBestPrice());
-        }
-        return potentialMatchedOrders.getBestPrice();
-    }
-
-    private double buyLimitOrderBestPrice(PotentialMatchedOrders potentialMatchedOrders) {
-        if (isBuyLimitPriceSatisfied(potentialMatchedOrders) && triggerPriceSatisfied(potentialMatchedOrders)) {
-            return Double.min(potentialMatchedOrders.getMatchedOrder().getLimitPrice(), potentialMatchedOrders.getBestPrice());
-        }
-        return potentialMatchedOrders.getBestPrice();
-    }
-
-    private boolean isSellLimitPriceSatisfied(PotentialMatchedOrders potentialMatchedOrders) {
-        if (potentialMatchedOrders.getMatchedOrder().getLimitPrice() >= potentialMatchedOrders.getNewOrder().getLimitPrice() ) return true;
-        return false;
-    }
-
-    private boolean isBuyLimitPriceSatisfied(PotentialMatchedOrders potentialMatchedOrders) {
-        if (potentialMatchedOrders.getMatchedOrder().getLimitPrice() <= potentialMatchedOrders.getNewOrder().getLimitPrice() ) return true;
-        return false;
-    }
-
-    private double marketOrderBuyOrSell(PotentialMatchedOrders potentialMatchedOrders) {
-        if (potentialMatchedOrders.getNewOrder().getDirection().equals("SELL")) return sellMarketOrderBestPrice(potentialMatchedOrders);
-        else if (potentialMatchedOrders.getNewOrder().getDirection().equals("BUY")) return buyMarketOrderBestPrice(potentialMatchedOrders);
-        else return potentialMatchedOrders.getBestPrice();
-    }
-
-    private double buyMarketOrderBestPrice(PotentialMatchedOrders potentialMatchedOrders) {
-        if (triggerPriceSatisfied(potentialMatchedOrders) ) {
-            return Double.min(potentialMatchedOrders.getMatchedOrder().getLimitPrice(), potentialMatchedOrders.getBestPrice());
-        }
-        return potentialMatchedOrders.getBestPrice();
-    }
-
-    private double sellMarketOrderBestPrice(PotentialMatchedOrders potentialMatchedOrders) {
-        if (triggerPriceSatisfied(potentialMatchedOrders) ) {
-            return Double.max(potentialMatchedOrders.getMatchedOrder().getLimitPrice(), potentialMatchedOrders.getBestPrice());
-        }
-        return potentialMatchedOrders.getBestPrice();
+    private static boolean limitOrderBuyOrSell(Direction direction, double limitPrice, double restingPrice) {
+        if (direction == Direction.SELL) return restingPrice >= limitPrice;
+        else if (direction == Direction.BUY) return restingPrice <= limitPrice;
+        else return false;
     }
 
 }
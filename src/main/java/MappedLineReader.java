@@ -0,0 +1,93 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Reads a text file a line at a time straight from memory-mapped windows of the file, handing each line to a
+ * LineHandler as a range of bytes rather than a String. Lines end at '\n', '\r' or "\r\n", and the last line need
+ * not end with a line terminator, as with BufferedReader.readLine. A line which does not fit in the rest of a
+ * window is read again from the start of the next window, so no line is ever split between two windows
+ */
+@Log4j2
+public class MappedLineReader {
+
+    public interface LineHandler {
+
+        /**
+         * @param buffer: a read-only window of the file, which can be read until it is no longer referenced
+         * @param start: index of the first byte of the line
+         * @param end: index of the line terminator, or of the end of the file
+         */
+        void onLine(ByteBuffer buffer, int start, int end);
+    }
+
+    private static final long DEFAULT_WINDOW_BYTES = 256L * 1024 * 1024;
+
+    private final long windowBytes;
+
+    public MappedLineReader() {
+        this(DEFAULT_WINDOW_BYTES);
+    }
+
+    /**
+     * @param windowBytes: the most of the file mapped at once, which must be longer than the longest line
+     */
+    public MappedLineReader(long windowBytes) {
+        if (windowBytes < 1 || windowBytes >= Integer.MAX_VALUE) {
+            LOGGER.error("Invalid window size: {}", windowBytes);
+            throw new IllegalArgumentException();
+        }
+        this.windowBytes = windowBytes;
+    }
+
+    /**
+     * Hands every line of the file to lineHandler, in order
+     * @param path
+     * @param lineHandler
+     * @throws IOException: including NoSuchFileException if the file does not exist
+     */
+    public void read(Path path, LineHandler lineHandler) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long windowStart = 0;
+            while (windowStart < size) {
+                int windowSize = (int) Math.min(this.windowBytes, size - windowStart);
+                boolean lastWindow = windowStart + windowSize == size;
+                // One byte past the window is mapped too, to see whether a '\r' ending the window is part of "\r\n"
+                int mappedSize = (int) Math.min(windowSize + 1L, size - windowStart);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, mappedSize);
+                int lineStart = readLines(window, windowSize, lineHandler);
+
+                if (lastWindow) {
+                    if (lineStart < windowSize) lineHandler.onLine(window, lineStart, windowSize);
+                    windowStart = size;
+                } else if (lineStart == 0) {
+                    LOGGER.error("Line longer than {} bytes at position {} of {}", windowSize, windowStart, path);
+                    throw new IOException("Line too long");
+                } else {
+                    windowStart += lineStart;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the start of the first line in the window which has not been handed to the LineHandler
+     */
+    private static int readLines(MappedByteBuffer window, int windowSize, LineHandler lineHandler) {
+        int lineStart = 0;
+        for (int i = 0; i < windowSize; i++) {
+            byte b = window.get(i);
+            if (b != '\n' && b != '\r') continue;
+
+            lineHandler.onLine(window, lineStart, i);
+            if (b == '\r' && i + 1 < window.limit() && window.get(i + 1) == '\n') i++;
+            lineStart = i + 1;
+        }
+        return lineStart;
+    }
+}
@@ -1,51 +1,40 @@
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
 import lombok.extern.log4j.Log4j2;
 
 @Log4j2
-public class MarketOrderQueue extends TriggerRules {
+public class MarketOrderQueue {
 
-    private LinkedList<Order> marketOrderQueue;
-    private HashMap<String, Double> lastExecutedPriceMap;
+    private ArrayDeque<Order> marketOrderQueue;
 
     public MarketOrderQueue(){
-        this.marketOrderQueue = new LinkedList<Order>();
-        this.lastExecutedPriceMap = new HashMap<String, Double>();
+        this.marketOrderQueue = new ArrayDeque<Order>();
     }
 
     public int size(){
         return marketOrderQueue.size();
     }
 
-    public void addOrderToQueue(Order newOrder) {
-        this.marketOrderQueue.add(newOrder);
-
+    /**
+     * Visits every resting order, oldest first
+     * @param action
+     */
+    public void forEachOrder(Consumer<Order> action) {
+        this.marketOrderQueue.forEach(action);
     }
 
-    private boolean tickerMatch(Order newOrder, Order iteratorOrder) {
-        return iteratorOrder.getTicker().equals(newOrder.getTicker());
-    }
+    public void addOrderToQueue(Order newOrder) {
+        this.marketOrderQueue.add(newOrder);
 
-    public Order findMatchingMarketOrder(Order newOrder) {
-        int index = 0;
-        for(Order order : marketOrderQueue) {
-            PotentialMatchedOrders potentialMatchedOrders = PotentialMatchedOrders.builder()
-                .newOrder(newOrder)
-                .matchedOrder(order)
-                .bestPrice(0.0)
-                .build();
-
-            if (tickerMatch(newOrder, order) && triggerPriceSatisfied(potentialMatchedOrders)) {
-                return secureAndRemoveOrder(order, index);
-            }
-            index++;
-        }
-        return createDummyOrder();
     }
 
-    private Order secureAndRemoveOrder(Order iteratorOrder, int index) {
-        Order matchedOrder = iteratorOrder;
-        this.marketOrderQueue.remove(index);
+    /**
+     * STOP orders only join the queue once activated, so every resting order is eligible and the oldest is matched
+     * @return
+     */
+    public Order findMatchingMarketOrder() {
+        Order matchedOrder = this.marketOrderQueue.poll();
+        if (matchedOrder == null) return Order.NO_ORDER;
         return matchedOrder;
     }
 
@@ -0,0 +1,111 @@
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.actuate.metrics.MetricsEndpoint;
+
+/**
+ * Serves the exchange metrics through the actuator metrics endpoint while the engine runs, at
+ * /actuator/metrics for the list of metric names and /actuator/metrics/{name}?tag=key:value for a single metric,
+ * with the same JSON responses as a Spring Boot application. The endpoint is served by the JDK's HTTP server rather
+ * than a Spring application context, as the Spring Cloud starters on the classpath cannot start a Spring Boot 2
+ * context. Scrapes are answered on a single thread of their own and only read the metrics, so the engine never
+ * waits for a scrape
+ */
+@Log4j2
+public class MetricsServer {
+
+    private static final String METRICS_PATH = "/actuator/metrics";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final MetricsEndpoint endpoint;
+    private final ObjectMapper objectMapper;
+
+    private MetricsServer(HttpServer server, MeterRegistry registry) {
+        this.server = server;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.endpoint = new MetricsEndpoint(registry);
+        this.objectMapper = new ObjectMapper();
+    }
+
+    /**
+     * Starts the server and binds each of the binders to its MeterRegistry
+     * @param port
+     * @param binders
+     * @return
+     * @throws IOException: if the port cannot be bound
+     */
+    public static MetricsServer start(int port, MeterBinder... binders) throws IOException {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        for (MeterBinder binder : binders) binder.bindTo(registry);
+
+        MetricsServer metricsServer = new MetricsServer(HttpServer.create(new InetSocketAddress(port), 0), registry);
+        metricsServer.server.createContext(METRICS_PATH, metricsServer::handle);
+        metricsServer.server.setExecutor(metricsServer.executor);
+        metricsServer.server.start();
+        LOGGER.info("Serving metrics at http://localhost:{}{}", port, METRICS_PATH);
+        return metricsServer;
+    }
+
+    public void shutdown() {
+        this.server.stop(0);
+        this.executor.shutdown();
+    }
+
+    private void handle(HttpExchange httpExchange) throws IOException {
+        try {
+            String path = httpExchange.getRequestURI().getPath();
+            Object response = null;
+            if (path.equals(METRICS_PATH) || path.equals(METRICS_PATH + "/")) {
+                response = this.endpoint.listNames();
+            } else {
+                String name = path.substring(METRICS_PATH.length() + 1);
+                response = this.endpoint.metric(name, tags(httpExchange.getRequestURI().getRawQuery()));
+            }
+
+            if (response == null) {
+                httpExchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            byte[] body = this.objectMapper.writeValueAsBytes(response);
+            httpExchange.getResponseHeaders().set("Content-Type", "application/json");
+            httpExchange.sendResponseHeaders(200, body.length);
+            OutputStream responseBody = httpExchange.getResponseBody();
+            responseBody.write(body);
+            responseBody.close();
+        } catch (RuntimeException e) {
+            LOGGER.error("Metrics request {} failed: {}", httpExchange.getRequestURI(), e.toString());
+            httpExchange.sendResponseHeaders(400, -1);
+        } finally {
+            httpExchange.close();
+        }
+    }
+
+    /**
+     * @param query: the raw query string, which may be null
+     * @return the values of every tag parameter, each of the form key:value
+     */
+    private static ArrayList<String> tags(String query) throws IOException {
+        ArrayList<String> tags = new ArrayList<String>();
+        if (query == null) return tags;
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith("tag=")) tags.add(URLDecoder.decode(parameter.substring(4), "UTF-8"));
+        }
+        return tags;
+    }
+}
@@ -0,0 +1,90 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * The missions which have not yet been settled, kept in buckets by the date they are due to settle on, which is
+ * the date of the agreement plus the settlement cycle. Adding a mission appends it to its bucket, and the missions
+ * due on a day are taken out a bucket at a time, so neither touches the missions due on other days. Within a bucket
+ * missions keep the order they were added in, and the buckets are kept in date order, so the store lists the
+ * missions in the order they were agreed in, as the missions file does.
+ * A mission whose settlement date has passed without it being taken out stays in the store, as it did in the
+ * missions file
+ */
+@Log4j2
+public class MissionStore {
+
+    public static final int DEFAULT_SETTLEMENT_CYCLE = 2;
+
+    private final int settlementCycle;
+    private final TreeMap<Integer, ArrayList<Agreement>> missionsBySettlementDate;
+    private int size;
+
+    /**
+     * @param settlementCycle: number of days between an agreement and its settlement, such as 2 for T+2
+     */
+    public MissionStore(int settlementCycle) {
+        if (settlementCycle < 0) {
+            LOGGER.error("Invalid settlement cycle: T+{}", settlementCycle);
+            throw new IllegalArgumentException();
+        }
+        this.settlementCycle = settlementCycle;
+        this.missionsBySettlementDate = new TreeMap<Integer, ArrayList<Agreement>>();
+        this.size = 0;
+    }
+
+    public int getSettlementCycle() {
+        return this.settlementCycle;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public void add(Agreement mission) {
+        int settlementDate = mission.getDateOfAgreement() + this.settlementCycle;
+        ArrayList<Agreement> bucket = this.missionsBySettlementDate.get(settlementDate);
+        if (bucket == null) {
+            bucket = new ArrayList<Agreement>();
+            this.missionsBySettlementDate.put(settlementDate, bucket);
+        }
+        bucket.add(mission);
+        this.size++;
+    }
+
+    public void addAll(Collection<Agreement> missions) {
+        for (Agreement mission : missions) add(mission);
+    }
+
+    /**
+     * Removes the missions due to settle on the date
+     * @param date
+     * @return the missions, in the order they were added
+     */
+    public ArrayList<Agreement> takeDue(int date) {
+        ArrayList<Agreement> dueMissions = this.missionsBySettlementDate.remove(date);
+        if (dueMissions == null) return new ArrayList<Agreement>();
+        this.size -= dueMissions.size();
+        return dueMissions;
+    }
+
+    /**
+     * @return every mission in the store, in settlement date order, and in the order they were added within a date
+     */
+    public ArrayList<Agreement> toList() {
+        ArrayList<Agreement> missions = new ArrayList<Agreement>(this.size);
+        for (Map.Entry<Integer, ArrayList<Agreement>> bucket : this.missionsBySettlementDate.entrySet()) {
+            missions.addAll(bucket.getValue());
+        }
+        return missions;
+    }
+
+    /**
+     * @return the buckets of missions, in settlement date order, which must not be changed
+     */
+    Collection<ArrayList<Agreement>> buckets() {
+        return this.missionsBySettlementDate.values();
+    }
+}
@@ -1,21 +1,44 @@
 import lombok.Builder;
-import lombok.Setter;
 import lombok.Value;
 
 @Builder
 @Value
 public class Order {
 
+    /**
+     * Marks an absent limit price (MARKET orders) or trigger price (non STOP orders)
+     */
+    public static final double NO_PRICE = Double.NaN;
+
+    /**
+     * Shared sentinel returned when no matching order is found, so that failed look-ups do not allocate
+     */
+    public static final Order NO_ORDER = Order.builder().orderId(-1).build();
+
     private final Customer customer;
     private final int orderId;
-    private final String direction;
+    private final Direction direction;
     private final int quantity;
     private final String ticker;
-    private final String type;
+    private final int tickerId;
+    private final OrderType type;
     private final double limitPrice;
-    private final String timeInForce;
+    private final TimeInForce timeInForce;
     private final double triggerPrice;
 
+    public boolean hasLimitPrice() {
+        return !Double.isNaN(this.limitPrice);
+    }
+
+    public boolean isStopOrder() {
+        return !Double.isNaN(this.triggerPrice);
+    }
+
+    private static String priceToString(double price) {
+        if (Double.isNaN(price)) return "NULL";
+        return Double.toString(price);
+    }
+
     @Override
     public String toString() {
         return "customer = " + this.customer.getName()
@@ -24,9 +47,9 @@ public class Order {
         + ", quantity = " + Integer.toString(this.quantity)
         + ", ticker = " + this.ticker
         + ", type = " + this.type
-        + ", limitPrice = " + Double.toString(this.limitPrice)
+        + ", limitPrice = " + priceToString(this.limitPrice)
         + ", timeInForce = " + this.timeInForce
-        + ", triggerPrice = " + Double.toString(this.triggerPrice);
+        + ", triggerPrice = " + priceToString(this.triggerPrice);
     }
 
 }
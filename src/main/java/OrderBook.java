@@ -0,0 +1,29 @@
+import java.util.ArrayDeque;
+import lombok.Getter;
+
+/**
+ * All of the resting orders for a single ticker. The Exchange holds one OrderBook per ticker, so matching an order
+ * only ever looks at orders which share its ticker. Matching an order never touches another ticker's OrderBook,
+ * so OrderBooks for different tickers may be matched on different threads
+ */
+@Getter
+public class OrderBook {
+
+    private final String ticker;
+    private final MarketOrderQueue buyMarketOrders;
+    private final MarketOrderQueue sellMarketOrders;
+    private final LimitOrderList buyLimitOrders;
+    private final LimitOrderList sellLimitOrders;
+    private final StopOrderList stopOrders;
+    private final ArrayDeque<Order> activatedOrders;
+
+    public OrderBook(String ticker) {
+        this.ticker = ticker;
+        this.buyMarketOrders = new MarketOrderQueue();
+        this.sellMarketOrders = new MarketOrderQueue();
+        this.buyLimitOrders = new LimitOrderList();
+        this.sellLimitOrders = new LimitOrderList();
+        this.stopOrders = new StopOrderList();
+        this.activatedOrders = new ArrayDeque<Order>();
+    }
+}
@@ -0,0 +1,17 @@
+public interface OrderCallback extends AgreementSink {
+
+    /**
+     * Called once the order has been matched, after each Agreement it made has been passed to onAgreement
+     * @param order
+     * @param agreementsMade
+     */
+    void onOrderComplete(Order order, int agreementsMade);
+
+    /**
+     * Called instead of onOrderComplete when the Exchange threw while matching the order, after each Agreement it made
+     * before then has been passed to onAgreement. The order may have been left resting on the book
+     * @param order
+     * @param exception: thrown by the Exchange
+     */
+    void onOrderFailed(Order order, RuntimeException exception);
+}
@@ -0,0 +1,422 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Decodes a row of an orders csv file into an Order straight from the bytes of the row. Fields are found by
+ * scanning for commas, numbers are decoded where they lie, and the ticker and customer are resolved to ids by
+ * ReferenceData, so a valid row allocates nothing but its Order. A field is only decoded into a String to log why
+ * it is invalid, or when a number is in a form which only the full parsers of Integer and Double accept.
+ * Rows are split as String.split(",") splits them and numbers are parsed exactly as Integer.parseInt and
+ * Double.parseDouble parse them, so the same rows are accepted, with the same values, and the same diagnostics are
+ * logged for the rows which are not, unless the parser was made not to log. A row is rejected by returning a
+ * RejectReason rather than by throwing: the syntax of a number is checked before it is handed to a JDK parser, so
+ * that a dirty feed costs no more than a clean one. A parser reuses its field positions from row to row, so it is
+ * used by one thread at a time
+ */
+@Log4j2
+public class OrderCsvParser {
+
+    public static final int FIELD_COUNT = 9;
+
+    private static final int ORDER_ID = 0;
+    private static final int CUSTOMER_NAME = 1;
+    private static final int DIRECTION = 2;
+    private static final int QUANTITY = 3;
+    private static final int TICKER = 4;
+    private static final int TYPE = 5;
+    private static final int LIMIT_PRICE = 6;
+    private static final int TIME_IN_FORCE = 7;
+    private static final int TRIGGER_PRICE = 8;
+
+    private static final byte[] BUY = bytes("BUY");
+    private static final byte[] SELL = bytes("SELL");
+    private static final byte[] LIMIT = bytes("LIMIT");
+    private static final byte[] STOP_LIMIT = bytes("STOP-LIMIT");
+    private static final byte[] MARKET = bytes("MARKET");
+    private static final byte[] STOP_MARKET = bytes("STOP-MARKET");
+    private static final byte[] GTC = bytes("GTC");
+    private static final byte[] FOK = bytes("FOK");
+    private static final byte[] NULL = bytes("NULL");
+    private static final byte[] NAN = bytes("NaN");
+    private static final byte[] INFINITY = bytes("Infinity");
+
+    /**
+     * A decimal with no more than 15 digits is exactly representable as a long below 2^53, and 10^22 is the largest
+     * exactly representable power of ten, so dividing one by the other gives the correctly rounded double, as
+     * Double.parseDouble does
+     */
+    private static final int MAX_EXACT_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+    private static final int MAX_EXACT_INT_DIGITS = 9;
+
+    private final ReferenceData referenceData;
+    private final int[] fieldStarts;
+    private final int[] fieldEnds;
+    private final boolean logging;
+    private ByteBuffer buffer;
+    private RejectReason rejectReason;
+
+    public OrderCsvParser(ReferenceData referenceData) {
+        this(referenceData, true);
+    }
+
+    /**
+     * @param referenceData
+     * @param logging: false to reject rows without logging why, for rows which are parsed again if they are rejected
+     */
+    public OrderCsvParser(ReferenceData referenceData, boolean logging) {
+        this.referenceData = referenceData;
+        this.fieldStarts = new int[FIELD_COUNT];
+        this.fieldEnds = new int[FIELD_COUNT];
+        this.logging = logging;
+    }
+
+    /**
+     * @param buffer
+     * @param start: index of the first byte of the row
+     * @param end: index after the last byte of the row
+     * @return the Order, which has not yet been validated against the reference data or earlier orders, or null if
+     * the row does not have exactly 9 fields or a field cannot be decoded, when getRejectReason gives the reason
+     */
+    public Order parse(ByteBuffer buffer, int start, int end) {
+        this.buffer = buffer;
+        this.rejectReason = null;
+        int fieldCount = splitFields(start, end);
+        if (fieldCount != FIELD_COUNT) return reject(RejectReason.INVALID_INPUT);
+
+        if (this.logging && LOGGER.isDebugEnabled()) LOGGER.debug("customerName, {}", fieldToString(CUSTOMER_NAME));
+        Customer customer = customerField();
+
+        if (this.logging) LOGGER.debug("Creating new Order object from extracted row data");
+        int orderId = intField(ORDER_ID, RejectReason.INVALID_ORDER_ID);
+        if (this.rejectReason != null) return null;
+        int quantity = intField(QUANTITY, RejectReason.INVALID_QUANTITY);
+        if (this.rejectReason != null) return null;
+        int tickerId = this.referenceData.getTickerId(buffer, this.fieldStarts[TICKER], this.fieldEnds[TICKER]);
+        String ticker = tickerField(tickerId);
+        OrderType type = typeField();
+        if (this.rejectReason != null) return null;
+        double limitPrice = priceField(LIMIT_PRICE, RejectReason.INVALID_LIMIT_PRICE);
+        if (this.rejectReason != null) return null;
+        double triggerPrice = priceField(TRIGGER_PRICE, RejectReason.INVALID_TRIGGER_PRICE);
+        if (this.rejectReason != null) return null;
+        Direction direction = directionField();
+        if (this.rejectReason != null) return null;
+        TimeInForce timeInForce = timeInForceField();
+        if (this.rejectReason != null) return null;
+
+        return Order.builder()
+            .customer(customer)
+            .orderId(orderId)
+            .direction(direction)
+            .quantity(quantity)
+            .ticker(ticker)
+            .tickerId(tickerId)
+            .type(type)
+            .limitPrice(limitPrice)
+            .timeInForce(timeInForce)
+            .triggerPrice(triggerPrice)
+            .build();
+    }
+
+    /**
+     * @return why the last row parsed was rejected, or null if it was not
+     */
+    public RejectReason getRejectReason() {
+        return this.rejectReason;
+    }
+
+    private Order reject(RejectReason rejectReason) {
+        this.rejectReason = rejectReason;
+        return null;
+    }
+
+    /**
+     * Records where each of the first 9 fields starts and ends. As with String.split, a row without a comma is a
+     * single field, even when it is empty, and otherwise empty fields at the end of the row are not counted
+     * @return the number of fields
+     */
+    private int splitFields(int start, int end) {
+        int fieldCount = 0;
+        int countedFields = 0;
+        int fieldStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i < end && this.buffer.get(i) != ',') continue;
+            if (fieldCount < FIELD_COUNT) {
+                this.fieldStarts[fieldCount] = fieldStart;
+                this.fieldEnds[fieldCount] = i;
+            }
+            fieldCount++;
+            if (i > fieldStart) countedFields = fieldCount;
+            fieldStart = i + 1;
+        }
+        if (fieldCount == 1) return 1;
+        return countedFields;
+    }
+
+    private Customer customerField() {
+        int customerId = this.referenceData.getCustomerId(this.buffer, this.fieldStarts[CUSTOMER_NAME],
+            this.fieldEnds[CUSTOMER_NAME]);
+        if (customerId == ReferenceData.UNKNOWN_ID) return this.referenceData.getCustomer(fieldToString(CUSTOMER_NAME));
+        return this.referenceData.getCustomer(customerId);
+    }
+
+    private String tickerField(int tickerId) {
+        if (tickerId == ReferenceData.UNKNOWN_ID) return fieldToString(TICKER);
+        return this.referenceData.getTicker(tickerId);
+    }
+
+    /**
+     * Decodes up to 9 ASCII digits, with an optional sign, where they lie; anything else is left to parseInt
+     * @param field
+     * @param rejectReason: the reason the row is rejected if the field is not an integer
+     * @return
+     */
+    private int intField(int field, RejectReason rejectReason) {
+        int start = this.fieldStarts[field];
+        int end = this.fieldEnds[field];
+        boolean negative = false;
+        int i = start;
+        if (i < end && (this.buffer.get(i) == '-' || this.buffer.get(i) == '+')) {
+            negative = this.buffer.get(i) == '-';
+            i++;
+        }
+        if (i == end || end - i > MAX_EXACT_INT_DIGITS) return parseInt(field, rejectReason);
+
+        int value = 0;
+        for (; i < end; i++) {
+            int digit = this.buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) return parseInt(field, rejectReason);
+            value = value * 10 + digit;
+        }
+        if (negative) return -value;
+        return value;
+    }
+
+    /**
+     * Accepts what Integer.parseInt accepts: an optional sign and at least one digit, within the range of an int.
+     * Fields which are not ASCII may hold other Unicode digits, so only they are left to Integer.parseInt itself
+     */
+    private int parseInt(int field, RejectReason rejectReason) {
+        int start = this.fieldStarts[field];
+        int end = this.fieldEnds[field];
+        if (!isAscii(start, end)) {
+            try {
+                return Integer.parseInt(fieldToString(field));
+            } catch( NumberFormatException e ) {
+                return rejectInt(field, rejectReason);
+            }
+        }
+
+        boolean negative = false;
+        int i = start;
+        if (i < end && (this.buffer.get(i) == '-' || this.buffer.get(i) == '+')) {
+            negative = this.buffer.get(i) == '-';
+            i++;
+        }
+        if (i == end) return rejectInt(field, rejectReason);
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = this.buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) return rejectInt(field, rejectReason);
+            value = value * 10 + digit;
+            if (value > -(long) Integer.MIN_VALUE) return rejectInt(field, rejectReason);
+        }
+        if (negative) return (int) -value;
+        if (value > Integer.MAX_VALUE) return rejectInt(field, rejectReason);
+        return (int) value;
+    }
+
+    private int rejectInt(int field, RejectReason rejectReason) {
+        if (this.logging) LOGGER.error("Invalid string to integer conversion: {}", fieldToString(field));
+        this.rejectReason = rejectReason;
+        return 0;
+    }
+
+    /**
+     * Decodes a plain decimal of up to 15 ASCII digits, with an optional sign, where it lies; anything else is left to
+     * parseDouble. NULL is an absent price
+     * @param field
+     * @param rejectReason: the reason the row is rejected if the field is not a price
+     * @return
+     */
+    private double priceField(int field, RejectReason rejectReason) {
+        if (fieldEquals(field, NULL)) return Order.NO_PRICE; // Default value for Market orders
+        int start = this.fieldStarts[field];
+        int end = this.fieldEnds[field];
+        boolean negative = false;
+        int i = start;
+        if (i < end && (this.buffer.get(i) == '-' || this.buffer.get(i) == '+')) {
+            negative = this.buffer.get(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean point = false;
+        for (; i < end; i++) {
+            byte b = this.buffer.get(i);
+            if (b == '.' && !point) {
+                point = true;
+                continue;
+            }
+            int digit = b - '0';
+            if (digit < 0 || digit > 9 || digits == MAX_EXACT_DIGITS) return parseDouble(field, rejectReason);
+            mantissa = mantissa * 10 + digit;
+            digits++;
+            if (point) fractionDigits++;
+        }
+        if (digits == 0) return parseDouble(field, rejectReason);
+
+        double value = mantissa / POWERS_OF_TEN[fractionDigits];
+        if (negative) return -value;
+        return value;
+    }
+
+    /**
+     * Only hands the field to Double.parseDouble once it is known to be in a form which Double.parseDouble accepts.
+     * Fields which are not ASCII are left to Double.parseDouble itself
+     */
+    private double parseDouble(int field, RejectReason rejectReason) {
+        String inputString = fieldToString(field);
+        if (!isAscii(this.fieldStarts[field], this.fieldEnds[field])) {
+            try {
+                return Double.parseDouble(inputString);
+            } catch( NumberFormatException e ) {
+                return rejectDouble(inputString, rejectReason);
+            }
+        }
+        if (!isDoubleLiteral(this.fieldStarts[field], this.fieldEnds[field])) {
+            return rejectDouble(inputString, rejectReason);
+        }
+        return Double.parseDouble(inputString);
+    }
+
+    private double rejectDouble(String inputString, RejectReason rejectReason) {
+        if (this.logging) LOGGER.error("Invalid price input format: {}", inputString);
+        this.rejectReason = rejectReason;
+        return Order.NO_PRICE;
+    }
+
+    /**
+     * The grammar of Double.valueOf: surrounding whitespace, an optional sign, then NaN, Infinity, a hexadecimal
+     * significand with a binary exponent, or a decimal with an optional exponent, and then an optional float type
+     * suffix
+     */
+    private boolean isDoubleLiteral(int start, int end) {
+        while (start < end && this.buffer.get(start) <= ' ') start++;
+        while (end > start && this.buffer.get(end - 1) <= ' ') end--;
+        int i = start;
+        if (i < end && (this.buffer.get(i) == '-' || this.buffer.get(i) == '+')) i++;
+        if (rangeEquals(i, end, NAN) || rangeEquals(i, end, INFINITY)) return true;
+
+        boolean hex = end - i > 1 && this.buffer.get(i) == '0'
+            && (this.buffer.get(i + 1) == 'x' || this.buffer.get(i + 1) == 'X');
+        if (hex) i += 2;
+        int digits = 0;
+        boolean point = false;
+        for (; i < end; i++) {
+            byte b = this.buffer.get(i);
+            if (b == '.' && !point) {
+                point = true;
+            } else if (isDigit(b, hex)) {
+                digits++;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0) return false;
+
+        boolean exponent = i < end && (this.buffer.get(i) == 'e' || this.buffer.get(i) == 'E');
+        if (hex) exponent = i < end && (this.buffer.get(i) == 'p' || this.buffer.get(i) == 'P');
+        if (hex && !exponent) return false;
+        if (exponent) {
+            i++;
+            if (i < end && (this.buffer.get(i) == '-' || this.buffer.get(i) == '+')) i++;
+            int exponentDigits = 0;
+            for (; i < end && isDigit(this.buffer.get(i), false); i++) exponentDigits++;
+            if (exponentDigits == 0) return false;
+        }
+
+        if (i < end) {
+            byte b = this.buffer.get(i);
+            if (b == 'f' || b == 'F' || b == 'd' || b == 'D') i++;
+        }
+        return i == end;
+    }
+
+    private static boolean isDigit(byte b, boolean hex) {
+        if (b >= '0' && b <= '9') return true;
+        return hex && ((b >= 'a' && b <= 'f') || (b >= 'A' && b <= 'F'));
+    }
+
+    private boolean isAscii(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (this.buffer.get(i) < 0) return false;
+        }
+        return true;
+    }
+
+    private Direction directionField() {
+        if (fieldEquals(DIRECTION, BUY)) {
+            return Direction.BUY;
+        } else if (fieldEquals(DIRECTION, SELL)) {
+            return Direction.SELL;
+        } else {
+            if (this.logging) LOGGER.error("Invalid Direction input: {}", fieldToString(DIRECTION));
+            this.rejectReason = RejectReason.INVALID_DIRECTION;
+            return null;
+        }
+    }
+
+    private OrderType typeField() {
+        if (fieldEquals(TYPE, STOP_LIMIT) || fieldEquals(TYPE, LIMIT)) {
+            return OrderType.LIMIT;
+        } else if (fieldEquals(TYPE, STOP_MARKET) || fieldEquals(TYPE, MARKET)) {
+            return OrderType.MARKET;
+        } else {
+            if (this.logging) LOGGER.error("Invalid order type input: {}", fieldToString(TYPE));
+            this.rejectReason = RejectReason.INVALID_TYPE;
+            return null;
+        }
+    }
+
+    private TimeInForce timeInForceField() {
+        if (fieldEquals(TIME_IN_FORCE, GTC)) {
+            return TimeInForce.GTC;
+        } else if (fieldEquals(TIME_IN_FORCE, FOK)) {
+            return TimeInForce.FOK;
+        } else {
+            if (this.logging) LOGGER.error("Invalid Time In Force: {}", fieldToString(TIME_IN_FORCE));
+            this.rejectReason = RejectReason.INVALID_TIME_IN_FORCE;
+            return null;
+        }
+    }
+
+    private boolean fieldEquals(int field, byte[] value) {
+        return rangeEquals(this.fieldStarts[field], this.fieldEnds[field], value);
+    }
+
+    private boolean rangeEquals(int start, int end, byte[] value) {
+        if (end - start != value.length) return false;
+        for (int i = 0; i < value.length; i++) {
+            if (this.buffer.get(start + i) != value[i]) return false;
+        }
+        return true;
+    }
+
+    private String fieldToString(int field) {
+        int start = this.fieldStarts[field];
+        byte[] fieldBytes = new byte[this.fieldEnds[field] - start];
+        for (int i = 0; i < fieldBytes.length; i++) fieldBytes[i] = this.buffer.get(start + i);
+        return new String(fieldBytes, Charset.defaultCharset());
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(Charset.defaultCharset());
+    }
+}
@@ -0,0 +1,268 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.CRC32;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Append-only binary journal of every order accepted by the exchange, written before the order is matched, so that
+ * the resting and STOP orders of every OrderBook can be rebuilt after a restart. The file is memory-mapped a region
+ * at a time, so appending an order is a copy into memory, and the operating system writes the pages out on its own
+ * unless the SyncPolicy forces them sooner.
+ * Each record is its payload length, the payload, and a CRC32 of the payload. The pages of a record may reach the
+ * disk in any order, so after a crash the length may have been written out without the payload or its checksum.
+ * The journal therefore ends at the first record which has a zero length or whose payload does not match its
+ * checksum, and orders are appended from there. Every record is the same size and a region holds a whole number of
+ * records, so records never straddle two regions. Matching is deterministic,
+ * so replaying the journal into a new Exchange from the same reference data rebuilds the same OrderBooks and last
+ * executed prices, and makes the same Agreements, as the original run.
+ * A journal is written by one thread at a time
+ */
+@Log4j2
+public class OrderJournal {
+
+    /** When the journal forces the pages it has written out to disk */
+    public enum SyncPolicy {
+        /** Pages are forced to disk when a region is full and when the journal is closed */
+        NONE,
+        /** Pages are forced to disk after every batchSize orders */
+        BATCH,
+        /** Pages are forced to disk after every order */
+        EVERY_ORDER
+    }
+
+    private static final int LENGTH_BYTES = 4;
+    private static final int PAYLOAD_BYTES = 40;
+    private static final int CHECKSUM_BYTES = 4;
+    private static final int RECORD_BYTES = LENGTH_BYTES + PAYLOAD_BYTES + CHECKSUM_BYTES;
+    private static final long DEFAULT_REGION_BYTES = 64L * 1024 * 1024;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final SyncPolicy syncPolicy;
+    private final int batchSize;
+    private final long regionBytes;
+    private final CRC32 checksum;
+    private MappedByteBuffer region;
+    private long regionStart;
+    private int unsyncedOrders;
+
+    /**
+     * Opens the journal, creating it if it does not exist. Orders are appended after the last complete record already
+     * in the journal
+     * @param path
+     * @param syncPolicy
+     * @param batchSize: number of orders between each force to disk under the BATCH policy
+     * @throws IOException
+     */
+    public OrderJournal(Path path, SyncPolicy syncPolicy, int batchSize) throws IOException {
+        this(path, syncPolicy, batchSize, DEFAULT_REGION_BYTES);
+    }
+
+    OrderJournal(Path path, SyncPolicy syncPolicy, int batchSize, long regionBytes) throws IOException {
+        if (batchSize < 1 || regionBytes < RECORD_BYTES) {
+            LOGGER.error("Invalid journal batch size {} or region size {}", batchSize, regionBytes);
+            throw new IllegalArgumentException();
+        }
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        this.syncPolicy = syncPolicy;
+        this.batchSize = batchSize;
+        this.regionBytes = regionBytes - regionBytes % RECORD_BYTES;
+        this.unsyncedOrders = 0;
+        this.checksum = new CRC32();
+
+        long end = findEnd();
+        mapRegion(end);
+        LOGGER.info("Opened order journal {} with {} bytes of orders", path, end);
+    }
+
+    /**
+     * Writes the order to the journal
+     * @param order
+     * @param date: the market day on which the order was accepted
+     * @throws IOException
+     */
+    public void append(Order order, int date) throws IOException {
+        if (this.region.remaining() < RECORD_BYTES) nextRegion();
+        int recordStart = this.region.position();
+        this.region.position(recordStart + LENGTH_BYTES);
+        this.region.putInt(date);
+        this.region.putInt(order.getOrderId());
+        this.region.putInt(order.getCustomer().getId());
+        this.region.putInt(order.getTickerId());
+        this.region.putInt(order.getQuantity());
+        this.region.put((byte) order.getDirection().ordinal());
+        this.region.put((byte) order.getType().ordinal());
+        this.region.put((byte) order.getTimeInForce().ordinal());
+        this.region.put((byte) 0);
+        this.region.putDouble(order.getLimitPrice());
+        this.region.putDouble(order.getTriggerPrice());
+        this.region.putInt(checksum(this.region, recordStart));
+        this.region.putInt(recordStart, PAYLOAD_BYTES);
+
+        this.unsyncedOrders++;
+        if (this.syncPolicy == SyncPolicy.EVERY_ORDER
+            || (this.syncPolicy == SyncPolicy.BATCH && this.unsyncedOrders >= this.batchSize)) {
+            sync();
+        }
+    }
+
+    /**
+     * Forces every order appended so far to disk
+     */
+    public void sync() {
+        this.region.force();
+        this.unsyncedOrders = 0;
+    }
+
+    /**
+     * Matches every order in the journal, in the order it was appended, on an Exchange built from the same reference
+     * data as the one which wrote the journal, and adds every order id to orderIdSet so that the orders are not
+     * accepted again. Orders from before the date of the exchange are skipped, so that only the tail of the journal
+     * is replayed onto an exchange restored from a snapshot.
+     * Replaying rebuilds the OrderBooks, the last executed prices, the order ids and the Agreements of the day being
+     * replayed. It does not settle any missions, so the Accounts, the pending missions and the output files must come
+     * from a snapshot taken at the end of the day before. A journal which runs on past the date of the exchange would
+     * leave out the settlements of the days in between, and is refused
+     * @param referenceData
+     * @param exchange: must have matched no orders other than those restored from a snapshot
+     * @param orderIdSet
+     * @param agreementSink: receives every Agreement made while replaying
+     * @return the ids of the orders replayed
+     * @throws IOException
+     */
+    public HashSet<Integer> replay(ReferenceData referenceData, Exchange exchange, Set<Integer> orderIdSet,
+        AgreementSink agreementSink) throws IOException {
+        long end = this.regionStart + this.region.position();
+        HashSet<Integer> replayedOrderIds = new HashSet<Integer>();
+        for (long windowStart = 0; windowStart < end; windowStart += this.regionBytes) {
+            MappedByteBuffer window = this.channel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                Math.min(this.regionBytes, end - windowStart));
+            while (window.hasRemaining()) {
+                int recordStart = window.position();
+                window.getInt();
+                int date = window.getInt();
+                if (date < exchange.getDate()) {
+                    window.position(recordStart + RECORD_BYTES);
+                    continue;
+                }
+                if (date > exchange.getDate()) {
+                    LOGGER.error("Order journal {} runs on to day {}, past day {} of the exchange, whose missions "
+                        + "would not be settled", this.path, date, exchange.getDate());
+                    throw new IllegalStateException("Journal runs past the date of the exchange");
+                }
+
+                Order order = readOrder(window, referenceData);
+                window.position(recordStart + RECORD_BYTES);
+                orderIdSet.add(order.getOrderId());
+                replayedOrderIds.add(order.getOrderId());
+                exchange.findMatchingOrder(order, agreementSink);
+            }
+        }
+        LOGGER.info("Replayed {} orders from order journal {}", replayedOrderIds.size(), this.path);
+        return replayedOrderIds;
+    }
+
+    /**
+     * Reads the rest of a record, after its length and date
+     * @param journal
+     * @param referenceData
+     * @return
+     */
+    private static Order readOrder(MappedByteBuffer journal, ReferenceData referenceData) {
+        int orderId = journal.getInt();
+        Customer customer = referenceData.getCustomer(journal.getInt());
+        int tickerId = journal.getInt();
+        int quantity = journal.getInt();
+        Direction direction = Direction.values()[journal.get()];
+        OrderType type = OrderType.values()[journal.get()];
+        TimeInForce timeInForce = TimeInForce.values()[journal.get()];
+        journal.get();
+        double limitPrice = journal.getDouble();
+        double triggerPrice = journal.getDouble();
+
+        return Order.builder()
+            .customer(customer)
+            .orderId(orderId)
+            .direction(direction)
+            .quantity(quantity)
+            .ticker(referenceData.getTicker(tickerId))
+            .tickerId(tickerId)
+            .type(type)
+            .limitPrice(limitPrice)
+            .timeInForce(timeInForce)
+            .triggerPrice(triggerPrice)
+            .build();
+    }
+
+    /**
+     * Forces the journal to disk and cuts the file back to its last record
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        sync();
+        long end = this.regionStart + this.region.position();
+        this.channel.truncate(end);
+        this.channel.close();
+        LOGGER.info("Closed order journal {} at {} bytes", this.path, end);
+    }
+
+    /**
+     * Walks the records from the start of the file until it reaches a zero length, a payload which does not match its
+     * checksum, or the end of the file
+     * @return the position after the last complete record
+     * @throws IOException
+     */
+    private long findEnd() throws IOException {
+        long size = this.channel.size();
+        long end = 0;
+        for (long windowStart = 0; windowStart < size; windowStart += this.regionBytes) {
+            MappedByteBuffer window = this.channel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                Math.min(this.regionBytes, size - windowStart));
+            while (window.remaining() >= RECORD_BYTES) {
+                int recordStart = window.position();
+                if (window.getInt(recordStart) != PAYLOAD_BYTES) return end;
+                if (window.getInt(recordStart + LENGTH_BYTES + PAYLOAD_BYTES) != checksum(window, recordStart)) {
+                    LOGGER.error("Order journal {} record at {} does not match its checksum, so the journal ends there",
+                        this.path, windowStart + recordStart);
+                    return end;
+                }
+                window.position(recordStart + RECORD_BYTES);
+                end += RECORD_BYTES;
+            }
+            if (window.hasRemaining()) return end;
+        }
+        return end;
+    }
+
+    /**
+     * @param buffer
+     * @param recordStart
+     * @return the CRC32 of the payload of the record, leaving the buffer positioned after the payload
+     */
+    private int checksum(MappedByteBuffer buffer, int recordStart) {
+        int limit = buffer.limit();
+        buffer.limit(recordStart + LENGTH_BYTES + PAYLOAD_BYTES);
+        buffer.position(recordStart + LENGTH_BYTES);
+        this.checksum.reset();
+        this.checksum.update(buffer);
+        buffer.limit(limit);
+        return (int) this.checksum.getValue();
+    }
+
+    private void nextRegion() throws IOException {
+        this.region.force();
+        mapRegion(this.regionStart + this.region.position());
+    }
+
+    private void mapRegion(long start) throws IOException {
+        this.regionStart = start;
+        this.region = this.channel.map(FileChannel.MapMode.READ_WRITE, start, this.regionBytes);
+    }
+}
@@ -0,0 +1,168 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Parses the rows of an orders file on several threads, and hands them back in file order. The reading thread cuts
+ * the file into batches of lines, which parsing workers turn into Orders and put through every check which does not
+ * depend on earlier orders. The reading thread then takes the batches back in the order they were read and passes
+ * each row to a ParsedLineHandler, so the checks which do depend on earlier orders, and matching, happen on that one
+ * thread in file order, exactly as when the file is read serially.
+ * Workers do not log: a row which fails to parse or fails a check is handed back without an Order, to be parsed
+ * again by the serial path, which rejects it with the usual diagnostics
+ */
+@Log4j2
+public class OrderParsingPipeline {
+
+    public interface ParsedLineHandler {
+
+        /**
+         * @param parsedOrder: the Order, if the row parsed and passed ReadWriteFiles.staticRejectReason, otherwise null
+         * @param buffer
+         * @param start: index of the first byte of the line
+         * @param end: index of the line terminator, or of the end of the file
+         */
+        void onParsedLine(Order parsedOrder, ByteBuffer buffer, int start, int end);
+    }
+
+    private static final int DEFAULT_BATCH_LINES = 1024;
+
+    private final StageLatencies stageLatencies;
+    private final ExecutorService workers;
+    private final ThreadLocal<OrderCsvParser> parsers;
+    private final MappedLineReader mappedLineReader;
+    private final int batchLines;
+    private final int maxBatchesInFlight;
+
+    public OrderParsingPipeline(ReferenceData referenceData, StageLatencies stageLatencies, int workerCount) {
+        this(referenceData, stageLatencies, workerCount, DEFAULT_BATCH_LINES);
+    }
+
+    /**
+     * @param referenceData
+     * @param stageLatencies
+     * @param workerCount: number of parsing threads
+     * @param batchLines: number of lines parsed by a worker at a time
+     */
+    public OrderParsingPipeline(ReferenceData referenceData, StageLatencies stageLatencies, int workerCount,
+        int batchLines) {
+        if (workerCount < 1 || batchLines < 1) {
+            LOGGER.error("Invalid number of parsing workers {} or batch size {}", workerCount, batchLines);
+            throw new IllegalArgumentException();
+        }
+        this.stageLatencies = stageLatencies;
+        AtomicInteger workerNumber = new AtomicInteger(0);
+        this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "parsing-worker-" + workerNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.parsers = ThreadLocal.withInitial(() -> new OrderCsvParser(referenceData, false));
+        this.mappedLineReader = new MappedLineReader();
+        this.batchLines = batchLines;
+        // Enough batches to keep every worker busy while the reading thread matches the oldest one
+        this.maxBatchesInFlight = workerCount * 2;
+    }
+
+    /**
+     * Hands every line of the file to parsedLineHandler, in order, on the calling thread
+     * @param path
+     * @param parsedLineHandler
+     * @throws IOException: including NoSuchFileException if the file does not exist
+     */
+    public void read(Path path, ParsedLineHandler parsedLineHandler) throws IOException {
+        ArrayDeque<Future<Batch>> batchesInFlight = new ArrayDeque<Future<Batch>>();
+        Batch[] batch = {null};
+        this.mappedLineReader.read(path, (buffer, start, end) -> {
+            if (batch[0] != null && batch[0].buffer != buffer) {
+                submit(batch[0], batchesInFlight, parsedLineHandler);
+                batch[0] = null;
+            }
+            if (batch[0] == null) batch[0] = new Batch(buffer, this.batchLines);
+            batch[0].addLine(start, end);
+            if (batch[0].lineCount == this.batchLines) {
+                submit(batch[0], batchesInFlight, parsedLineHandler);
+                batch[0] = null;
+            }
+        });
+        if (batch[0] != null) submit(batch[0], batchesInFlight, parsedLineHandler);
+        while (!batchesInFlight.isEmpty()) handOver(batchesInFlight.poll(), parsedLineHandler);
+    }
+
+    /**
+     * Queues the batch for parsing, then hands over every batch at the head of the queue which has been parsed, waiting
+     * for the oldest if too many are queued
+     */
+    private void submit(Batch batch, ArrayDeque<Future<Batch>> batchesInFlight, ParsedLineHandler parsedLineHandler) {
+        batchesInFlight.add(this.workers.submit(() -> parse(batch)));
+        while (!batchesInFlight.isEmpty()
+            && (batchesInFlight.size() > this.maxBatchesInFlight || batchesInFlight.peek().isDone())) {
+            handOver(batchesInFlight.poll(), parsedLineHandler);
+        }
+    }
+
+    private Batch parse(Batch batch) {
+        OrderCsvParser parser = this.parsers.get();
+        for (int i = 0; i < batch.lineCount; i++) {
+            long startTime = System.nanoTime();
+            Order parsedOrder = parser.parse(batch.buffer, batch.starts[i], batch.ends[i]);
+            // A rejected row is left without an Order, so that the serial path rejects it again and logs why
+            if (parsedOrder != null && ReadWriteFiles.staticRejectReason(parsedOrder, false) == null) {
+                batch.orders[i] = parsedOrder;
+                this.stageLatencies.record(StageLatencies.Stage.PARSE_AND_VALIDATE, startTime);
+            }
+        }
+        return batch;
+    }
+
+    private void handOver(Future<Batch> parsedBatch, ParsedLineHandler parsedLineHandler) {
+        Batch batch = null;
+        try {
+            batch = parsedBatch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for parsing workers", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Parsing worker failed", e.getCause());
+        }
+        for (int i = 0; i < batch.lineCount; i++) {
+            parsedLineHandler.onParsedLine(batch.orders[i], batch.buffer, batch.starts[i], batch.ends[i]);
+        }
+    }
+
+    public void shutdown() {
+        this.workers.shutdown();
+    }
+
+    /**
+     * Consecutive lines from one window of the file, and the Orders parsed from them
+     */
+    private static class Batch {
+        private final ByteBuffer buffer;
+        private final int[] starts;
+        private final int[] ends;
+        private final Order[] orders;
+        private int lineCount;
+
+        private Batch(ByteBuffer buffer, int capacity) {
+            this.buffer = buffer;
+            this.starts = new int[capacity];
+            this.ends = new int[capacity];
+            this.orders = new Order[capacity];
+            this.lineCount = 0;
+        }
+
+        private void addLine(int start, int end) {
+            this.starts[this.lineCount] = start;
+            this.ends[this.lineCount] = end;
+            this.lineCount++;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Lets several threads submit orders to one Exchange without locking it. Each producer claims the next sequence
+ * number, writes its order into the matching slot of a ring buffer allocated up front, and then publishes the
+ * slot. A single sequencer thread reads the published slots in sequence order, in batches of consecutive slots,
+ * and is the only thread which ever calls the Exchange. Each order's Agreements and its completion, or its failure
+ * if the Exchange throws while matching it, are passed to the OrderCallback it was published with, on the sequencer
+ * thread, once the order has been matched. A callback must not throw, as an exception thrown by a callback stops the
+ * sequencer.
+ * A producer only waits when the ring buffer is full. Every ticker must be registered with the Exchange before
+ * orders are published, and the date must only be changed while the sequencer is stopped
+ */
+@Log4j2
+public class OrderSequencer {
+
+    private static final int MAX_BATCH_SIZE = 256;
+    private static final long IDLE_PARK_NANOS = 1000;
+
+    private final Exchange exchange;
+    private final int mask;
+    private final Order[] orders;
+    private final OrderCallback[] callbacks;
+    private final AtomicLongArray publishedSequences;
+    private final AtomicLong nextSequence;
+    private final AtomicLong consumedSequence;
+    private final ArrayList<Agreement> orderAgreements;
+    private final AgreementSink orderAgreementSink;
+    private final Thread sequencerThread;
+    private volatile boolean running;
+
+    /**
+     * @param exchange
+     * @param bufferSize: number of slots in the ring buffer, which must be a power of two
+     */
+    public OrderSequencer(Exchange exchange, int bufferSize) {
+        if (bufferSize < 1 || Integer.bitCount(bufferSize) != 1) {
+            LOGGER.error("Ring buffer size must be a power of two: {}", bufferSize);
+            throw new IllegalArgumentException();
+        }
+        this.exchange = exchange;
+        this.mask = bufferSize - 1;
+        this.orders = new Order[bufferSize];
+        this.callbacks = new OrderCallback[bufferSize];
+        this.publishedSequences = new AtomicLongArray(bufferSize);
+        for (int i = 0; i < bufferSize; i++) this.publishedSequences.set(i, -1);
+        this.nextSequence = new AtomicLong(0);
+        this.consumedSequence = new AtomicLong(0);
+        this.orderAgreements = new ArrayList<Agreement>();
+        this.orderAgreementSink = this.orderAgreements::add;
+        this.sequencerThread = new Thread(this::run, "order-sequencer");
+        this.sequencerThread.setDaemon(true);
+    }
+
+    public void start() {
+        this.running = true;
+        this.sequencerThread.start();
+    }
+
+    /**
+     * Claims the next slot in the ring buffer and publishes the order to it, waiting only if the ring buffer is full
+     * @param order
+     * @param callback: receives the Agreements made by the order and its completion, on the sequencer thread
+     * @return the sequence number of the order
+     */
+    public long publish(Order order, OrderCallback callback) {
+        if (!this.running) {
+            LOGGER.error("Order {} published to a stopped sequencer", order.getOrderId());
+            throw new IllegalStateException("Sequencer is not running");
+        }
+        long sequence = this.nextSequence.getAndIncrement();
+        long wrapPoint = sequence - this.orders.length;
+        while (wrapPoint >= this.consumedSequence.get()) LockSupport.parkNanos(1);
+
+        int slot = (int) (sequence & this.mask);
+        this.orders[slot] = order;
+        this.callbacks[slot] = callback;
+        this.publishedSequences.lazySet(slot, sequence);
+        return sequence;
+    }
+
+    /**
+     * Stops accepting orders, then waits for every order already published to be matched. Producers must have finished
+     * publishing before the sequencer is shut down
+     * @throws InterruptedException
+     */
+    public void shutdown() throws InterruptedException {
+        this.running = false;
+        this.sequencerThread.join();
+    }
+
+    private void run() {
+        long nextToConsume = this.consumedSequence.get();
+        while (true) {
+            int batchSize = availableBatchSize(nextToConsume);
+            if (batchSize == 0) {
+                if (!this.running && nextToConsume == this.nextSequence.get()) return;
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            for (long sequence = nextToConsume; sequence < nextToConsume + batchSize; sequence++) {
+                int slot = (int) (sequence & this.mask);
+                Order order = this.orders[slot];
+                OrderCallback callback = this.callbacks[slot];
+                this.orders[slot] = null;
+                this.callbacks[slot] = null;
+                matchOrder(order, callback);
+            }
+            nextToConsume += batchSize;
+            this.consumedSequence.lazySet(nextToConsume);
+        }
+    }
+
+    private int availableBatchSize(long nextToConsume) {
+        int batchSize = 0;
+        while (batchSize < MAX_BATCH_SIZE
+            && this.publishedSequences.get((int) ((nextToConsume + batchSize) & this.mask)) == nextToConsume + batchSize) {
+            batchSize++;
+        }
+        return batchSize;
+    }
+
+    /**
+     * Only the Exchange is guarded, so that an exception thrown by the callback is never reported as a failed order
+     * @param order
+     * @param callback
+     */
+    private void matchOrder(Order order, OrderCallback callback) {
+        this.orderAgreements.clear();
+        int agreementsMade = 0;
+        RuntimeException failure = null;
+        try {
+            agreementsMade = this.exchange.findMatchingOrder(order, this.orderAgreementSink);
+        } catch (RuntimeException e) {
+            LOGGER.error("Order {} not matched: {}", order.getOrderId(), e.toString());
+            failure = e;
+        }
+        for (int i = 0; i < this.orderAgreements.size(); i++) callback.onAgreement(this.orderAgreements.get(i));
+        if (failure != null) {
+            callback.onOrderFailed(order, failure);
+        } else {
+            callback.onOrderComplete(order, agreementsMade);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import lombok.Value;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Matches orders on several threads by giving each matching worker a fixed share of the tickers. A worker is a
+ * single thread, so every order for a ticker is matched in the order it was submitted, by the only thread which
+ * touches that ticker's OrderBook, and the OrderBooks need no locks.
+ * Each order is numbered as it is submitted, and its Agreements are kept with that number. Draining the exchange
+ * delivers the Agreements in order of submission, which is the order a single threaded Exchange makes them in, as
+ * the Agreements made for an order only ever depend on earlier orders for the same ticker.
+ * Every ticker must be registered with the Exchange before the PartitionedExchange is created
+ */
+@Log4j2
+public class PartitionedExchange {
+
+    private final Exchange exchange;
+    private final ExecutorService[] workers;
+    private final ArrayList<ArrayList<NumberedAgreement>> workerAgreements;
+    private long ordersSubmitted;
+    private volatile RuntimeException workerFailure;
+
+    public PartitionedExchange(Exchange exchange, int workerCount) {
+        if (workerCount < 1) {
+            LOGGER.error("Invalid number of matching workers: {}", workerCount);
+            throw new IllegalArgumentException();
+        }
+        this.exchange = exchange;
+        this.workers = new ExecutorService[workerCount];
+        this.workerAgreements = new ArrayList<ArrayList<NumberedAgreement>>();
+        for (int i = 0; i < workerCount; i++) {
+            String workerName = "matching-worker-" + i;
+            this.workers[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, workerName);
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.workerAgreements.add(new ArrayList<NumberedAgreement>());
+        }
+        this.ordersSubmitted = 0;
+    }
+
+    public int getWorkerCount() {
+        return this.workers.length;
+    }
+
+    /**
+     * Hands the order to the worker which owns its ticker. The Agreements it makes are held until the exchange is
+     * drained
+     * @param newOrder
+     */
+    public void submit(Order newOrder) {
+        long orderNumber = this.ordersSubmitted++;
+        int worker = workerFor(newOrder.getTickerId());
+        ArrayList<NumberedAgreement> agreements = this.workerAgreements.get(worker);
+        this.workers[worker].execute(() -> matchOrder(newOrder, orderNumber, agreements));
+    }
+
+    private int workerFor(int tickerId) {
+        return tickerId % this.workers.length;
+    }
+
+    private void matchOrder(Order newOrder, long orderNumber, ArrayList<NumberedAgreement> agreements) {
+        try {
+            long startTime = System.nanoTime();
+            int agreementsMade = this.exchange.findMatchingOrder(newOrder,
+                agreement -> agreements.add(new NumberedAgreement(orderNumber, agreement)));
+            this.exchange.getStageLatencies().record(StageLatencies.Stage.MATCHING, startTime);
+            LOGGER.info("Trades matched: {}", agreementsMade);
+        } catch (RuntimeException e) {
+            LOGGER.error("Order {} not matched: {}", newOrder.getOrderId(), e.toString());
+            if (this.workerFailure == null) this.workerFailure = e;
+        }
+    }
+
+    /**
+     * Waits for every submitted order to be matched, then delivers all of the Agreements made since the last drain to
+     * agreementSink, in the order in which their orders were submitted
+     * @param agreementSink
+     */
+    public void drainTo(AgreementSink agreementSink) {
+        awaitWorkers();
+        if (this.workerFailure != null) {
+            RuntimeException workerFailure = this.workerFailure;
+            this.workerFailure = null;
+            throw new IllegalStateException("Matching worker failed", workerFailure);
+        }
+
+        ArrayList<NumberedAgreement> agreements = new ArrayList<NumberedAgreement>();
+        for (ArrayList<NumberedAgreement> workerAgreements : this.workerAgreements) {
+            agreements.addAll(workerAgreements);
+            workerAgreements.clear();
+        }
+        // The sort is stable, so the Agreements made for one order keep the order in which they were made
+        Collections.sort(agreements, Comparator.comparingLong(NumberedAgreement::getOrderNumber));
+        for (NumberedAgreement agreement : agreements) agreementSink.onAgreement(agreement.getAgreement());
+    }
+
+    private void awaitWorkers() {
+        ArrayList<Future<?>> barriers = new ArrayList<Future<?>>();
+        for (ExecutorService worker : this.workers) barriers.add(worker.submit(() -> { }));
+        try {
+            for (Future<?> barrier : barriers) barrier.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for matching workers", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Matching worker failed", e.getCause());
+        }
+    }
+
+    public void shutdown() {
+        for (ExecutorService worker : this.workers) worker.shutdown();
+    }
+
+    @Value
+    private static class NumberedAgreement {
+        private final long orderNumber;
+        private final Agreement agreement;
+    }
+}
@@ -0,0 +1,126 @@
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Settles a day's missions on several threads by giving each settlement worker a fixed partition of the accounts:
+ * those of the broker dealers whose id falls in it, together with the accounts of their prime brokerage customers.
+ * The submitting thread hands each mission once to the partitions of the brokers in it, at most four, and every
+ * worker nets only the missions it was handed into the obligations of its own accounts, in mission order, so each
+ * account is only ever written by one thread, needs no lock, and is left with the balance a serial settlement
+ * leaves it with. The workers also share out the encoding of the settlement records, each taking a contiguous run of
+ * the missions into a buffer of its own which is reused every day, and the buffers are handed back in mission order
+ */
+@Log4j2
+public class PartitionedSettlement {
+
+    private final ExecutorService workers;
+    private final SettlementNetting[] settlementNettings;
+    private final StringBuilder[] settlementRecords;
+    private final ArrayList<ArrayList<Agreement>> partitionMissions;
+
+    public PartitionedSettlement(int workerCount) {
+        if (workerCount < 1) {
+            LOGGER.error("Invalid number of settlement workers: {}", workerCount);
+            throw new IllegalArgumentException();
+        }
+        this.settlementNettings = new SettlementNetting[workerCount];
+        this.settlementRecords = new StringBuilder[workerCount];
+        this.partitionMissions = new ArrayList<ArrayList<Agreement>>();
+        for (int i = 0; i < workerCount; i++) {
+            this.settlementNettings[i] = new SettlementNetting(i, workerCount);
+            this.settlementRecords[i] = new StringBuilder();
+            this.partitionMissions.add(new ArrayList<Agreement>());
+        }
+        AtomicInteger workerNumber = new AtomicInteger(0);
+        this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "settlement-worker-" + workerNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getWorkerCount() {
+        return this.settlementNettings.length;
+    }
+
+    /**
+     * Settles the missions into the accounts, and waits for every worker to finish
+     * @param missions
+     * @param esma: makes the settlement record of each mission
+     * @param stageLatencies
+     * @return the settlement records of the missions, each ending in a new line, in runs which are in the order of the
+     * missions. The runs are reused by the next settlement
+     */
+    public StringBuilder[] settle(ArrayList<Agreement> missions, ESMA esma, StageLatencies stageLatencies) {
+        int workerCount = this.settlementNettings.length;
+        for (ArrayList<Agreement> partitionMissions : this.partitionMissions) partitionMissions.clear();
+        for (Agreement agreement : missions) partitionMission(agreement);
+
+        ArrayList<Future<?>> partitions = new ArrayList<Future<?>>();
+        for (int i = 0; i < workerCount; i++) {
+            SettlementNetting settlementNetting = this.settlementNettings[i];
+            ArrayList<Agreement> partitionMissions = this.partitionMissions.get(i);
+            StringBuilder settlementRecords = this.settlementRecords[i];
+            int from = (int) ((long) missions.size() * i / workerCount);
+            int to = (int) ((long) missions.size() * (i + 1) / workerCount);
+            partitions.add(this.workers.submit(() -> settlePartition(settlementNetting, partitionMissions, missions,
+                esma, stageLatencies, settlementRecords, from, to)));
+        }
+        try {
+            for (Future<?> partition : partitions) partition.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for settlement workers", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Settlement worker failed", e.getCause());
+        }
+        return this.settlementRecords;
+    }
+
+    /**
+     * Hands the mission to the partition of each broker in it, once however many of its brokers the partition owns
+     */
+    private void partitionMission(Agreement agreement) {
+        int workerCount = this.settlementNettings.length;
+        int buyPrimeBroker = SettlementNetting.partitionOf(agreement.getBuyCustomer().getPrimeBroker(), workerCount);
+        int buyExecutingBroker =
+            SettlementNetting.partitionOf(agreement.getBuyCustomer().getExecutingBroker(), workerCount);
+        int sellPrimeBroker = SettlementNetting.partitionOf(agreement.getSellCustomer().getPrimeBroker(), workerCount);
+        int sellExecutingBroker =
+            SettlementNetting.partitionOf(agreement.getSellCustomer().getExecutingBroker(), workerCount);
+        this.partitionMissions.get(buyPrimeBroker).add(agreement);
+        if (buyExecutingBroker != buyPrimeBroker) this.partitionMissions.get(buyExecutingBroker).add(agreement);
+        if (sellPrimeBroker != buyPrimeBroker && sellPrimeBroker != buyExecutingBroker) {
+            this.partitionMissions.get(sellPrimeBroker).add(agreement);
+        }
+        if (sellExecutingBroker != buyPrimeBroker && sellExecutingBroker != buyExecutingBroker
+            && sellExecutingBroker != sellPrimeBroker) {
+            this.partitionMissions.get(sellExecutingBroker).add(agreement);
+        }
+    }
+
+    private static void settlePartition(SettlementNetting settlementNetting, ArrayList<Agreement> partitionMissions,
+        ArrayList<Agreement> missions, ESMA esma, StageLatencies stageLatencies, StringBuilder settlementRecords,
+        int from, int to) {
+        for (Agreement agreement : partitionMissions) settlementNetting.add(agreement);
+        settlementNetting.settle();
+        settlementRecords.setLength(0);
+        for (int i = from; i < to; i++) {
+            long startTime = System.nanoTime();
+            Agreement agreement = missions.get(i);
+            LOGGER.info("New mission to be settled: {}", agreement);
+            esma.createSettlement(agreement).appendTo(settlementRecords);
+            settlementRecords.append('\n');
+            stageLatencies.record(StageLatencies.Stage.SETTLEMENT, startTime);
+        }
+    }
+
+    public void shutdown() {
+        this.workers.shutdown();
+    }
+}
@@ -0,0 +1,165 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Orders queued at each of a set of prices, in ascending price order, where the orders at one price are queued in the
+ * order in which they arrived. Prices are ordered as Double.compare orders them, as in a TreeMap of Doubles. The
+ * prices are kept in a sorted array, found by binary search, and a queue emptied of orders is kept for the next new
+ * price, so once the ladder has grown to the depth of the book, queuing and taking orders allocates nothing: no price
+ * is boxed, and no map entry or list node is made
+ */
+public class PriceLevels {
+
+    private static final int INITIAL_LEVELS = 16;
+
+    private double[] prices;
+    private final ArrayList<ArrayDeque<Order>> levels;
+    private final ArrayList<ArrayDeque<Order>> spareLevels;
+    private int size;
+
+    public PriceLevels() {
+        this.prices = new double[INITIAL_LEVELS];
+        this.levels = new ArrayList<ArrayDeque<Order>>(INITIAL_LEVELS);
+        this.spareLevels = new ArrayList<ArrayDeque<Order>>();
+        this.size = 0;
+    }
+
+    /**
+     * Queues the order behind any others at its price
+     * @param price
+     * @param order
+     */
+    public void add(double price, Order order) {
+        int index = indexOf(price);
+        if (index < 0) {
+            index = -index - 1;
+            addLevel(index, price);
+        }
+        this.levels.get(index).add(order);
+        this.size++;
+    }
+
+    /**
+     * @return the number of orders queued at every price
+     */
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.levels.isEmpty();
+    }
+
+    /**
+     * Only valid when not empty
+     * @return
+     */
+    public double lowestPrice() {
+        return this.prices[0];
+    }
+
+    /**
+     * Only valid when not empty
+     * @return
+     */
+    public double highestPrice() {
+        return this.prices[this.levels.size() - 1];
+    }
+
+    /**
+     * Takes the oldest order at the lowest price. Only valid when not empty
+     * @return
+     */
+    public Order pollLowest() {
+        return poll(0);
+    }
+
+    /**
+     * Takes the oldest order at the highest price. Only valid when not empty
+     * @return
+     */
+    public Order pollHighest() {
+        return poll(this.levels.size() - 1);
+    }
+
+    /**
+     * Takes every order at a price below the given price, lowest price first, and adds it to orders
+     * @param price
+     * @param orders
+     */
+    public void pollBelow(double price, Collection<Order> orders) {
+        while (!isEmpty() && Double.compare(lowestPrice(), price) < 0) pollLevel(0, orders);
+    }
+
+    /**
+     * Takes every order at a price above the given price, highest price first, and adds it to orders
+     * @param price
+     * @param orders
+     */
+    public void pollAbove(double price, Collection<Order> orders) {
+        while (!isEmpty() && Double.compare(highestPrice(), price) > 0) pollLevel(this.levels.size() - 1, orders);
+    }
+
+    /**
+     * Visits every order in ascending price order, and in order of arrival within a price
+     * @param action
+     */
+    public void forEachOrder(Consumer<Order> action) {
+        for (ArrayDeque<Order> level : this.levels) level.forEach(action);
+    }
+
+    private Order poll(int index) {
+        ArrayDeque<Order> level = this.levels.get(index);
+        Order order = level.poll();
+        this.size--;
+        if (level.isEmpty()) removeLevel(index);
+        return order;
+    }
+
+    private void pollLevel(int index, Collection<Order> orders) {
+        ArrayDeque<Order> level = this.levels.get(index);
+        this.size -= level.size();
+        while (!level.isEmpty()) orders.add(level.poll());
+        removeLevel(index);
+    }
+
+    /**
+     * @param price
+     * @return the index of the price, or -(insertion point) - 1 if no order is queued at the price
+     */
+    private int indexOf(double price) {
+        int low = 0;
+        int high = this.levels.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = Double.compare(this.prices[middle], price);
+            if (comparison < 0) low = middle + 1;
+            else if (comparison > 0) high = middle - 1;
+            else return middle;
+        }
+        return -(low + 1);
+    }
+
+    private void addLevel(int index, double price) {
+        int levelCount = this.levels.size();
+        if (levelCount == this.prices.length) this.prices = Arrays.copyOf(this.prices, levelCount * 2);
+        System.arraycopy(this.prices, index, this.prices, index + 1, levelCount - index);
+        this.prices[index] = price;
+        ArrayDeque<Order> level;
+        if (this.spareLevels.isEmpty()) {
+            level = new ArrayDeque<Order>();
+        } else {
+            level = this.spareLevels.remove(this.spareLevels.size() - 1);
+        }
+        this.levels.add(index, level);
+    }
+
+    private void removeLevel(int index) {
+        int levelCount = this.levels.size();
+        System.arraycopy(this.prices, index + 1, this.prices, index, levelCount - index - 1);
+        this.spareLevels.add(this.levels.remove(index));
+    }
+}
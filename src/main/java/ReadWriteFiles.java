@@ -1,327 +1,377 @@
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Set;
 import javax.validation.constraints.Null;
 import lombok.Builder;
 import lombok.extern.log4j.Log4j2;
 
-@Builder
 @Log4j2
 public class ReadWriteFiles {
 
     private final Exchange exchange;
-    private final HashMap<String, Customer> customerHashMap;
-    private final HashMap<String, BrokerDealer> brokerDealerHashMap;
-    private final HashSet<String> tickerSet;
+    private final ReferenceData referenceData;
     private final HashSet<Integer> orderIdSet;
+    private final PartitionedExchange partitionedExchange;
+    private final OrderJournal orderJournal;
+    private final OrderParsingPipeline orderParsingPipeline;
+    private final PartitionedSettlement partitionedSettlement;
+    private final String rejectsFileName;
+    private final Set<Integer> replayedOrderIds;
+    private final OrderCsvParser orderCsvParser;
+    private final MappedLineReader mappedLineReader;
+    private final StringBuilder rejectedRows;
+    private final ChannelFileWriter outputWriter;
+    private final StringBuilder outputRecord;
 
     /**
-     * Imports the csv file as a String and iterates through line-by-line, creating Order objects and determining
-     * whether the inputs are valid. If the order is valid then it will be added to the exchange - returning either a
-     * matched order pair (agreements), or no match. The agreements are then assembled into an ArrayList which is
-     * returned.
-     * The reason that more than one matched order can be returned from a single order input is from a new last
-     * executed price activating new trigger prices, so newly activated orders are checked to see if they can be matched
+     * @param exchange
+     * @param referenceData
+     * @param orderIdSet
+     * @param partitionedExchange: matches orders on several threads if set
+     * @param orderJournal: journals accepted orders if set
+     * @param orderParsingPipeline: parses orders on several threads if set
+     * @param partitionedSettlement: settles missions on several threads if set
+     * @param rejectsFileName: if set, the rows rejected each day are written to this file name followed by the date
+     * @param atomicOutput: true to write each output file to a temporary file which is then moved into place, so that
+     * a crash never leaves a half written file behind
+     * @param replayedOrderIds: if set, the ids of the orders replayed from an OrderJournal. The first row read with
+     * each of these ids is the order already replayed, and is skipped without being rejected
+     */
+    @Builder
+    public ReadWriteFiles(Exchange exchange, ReferenceData referenceData, HashSet<Integer> orderIdSet,
+        PartitionedExchange partitionedExchange, OrderJournal orderJournal, OrderParsingPipeline orderParsingPipeline,
+        PartitionedSettlement partitionedSettlement, String rejectsFileName, boolean atomicOutput,
+        Set<Integer> replayedOrderIds) {
+        this.exchange = exchange;
+        this.referenceData = referenceData;
+        this.orderIdSet = orderIdSet;
+        this.partitionedExchange = partitionedExchange;
+        this.orderJournal = orderJournal;
+        this.orderParsingPipeline = orderParsingPipeline;
+        this.partitionedSettlement = partitionedSettlement;
+        this.rejectsFileName = rejectsFileName;
+        this.replayedOrderIds = replayedOrderIds;
+        this.orderCsvParser = new OrderCsvParser(referenceData);
+        this.mappedLineReader = new MappedLineReader();
+        this.rejectedRows = new StringBuilder();
+        this.outputWriter = new ChannelFileWriter(atomicOutput);
+        this.outputRecord = new StringBuilder();
+    }
+
+    /**
+     * Reads the csv file line-by-line from a memory-mapped view of the file, creating Order objects and determining
+     * whether the inputs are valid. If the order is valid then it will be added to the exchange, which adds any
+     * Agreements it makes to the ArrayList which is returned. Each row is decoded where it lies in the file, without
+     * first being copied into a String. With an OrderParsingPipeline the rows are parsed on its workers, and only
+     * the checks which depend on earlier orders, and matching, are left to the calling thread. Rejected rows are kept,
+     * with the reason they were rejected, and written to the day's rejects file once the whole file has been read.
+     * The reason that more than one Agreement can be made from a single order input is from a new last executed price
+     * activating new trigger prices, so newly activated orders are checked to see if they can be matched
      *
-     * @param ordersFileName: the csv file contained within a single String variable
-     * @return stringToAgreement(String matchedOrders): the matched orders output from the exchange is a concatenated
-     * string (similar to the ordersFileName input), therefore stringToAgreement method is used to decompose the
-     * concatenated string into Agreement objects, which are contained within an ArrayList
+     * @param ordersFileName: the csv file name, without the date and extension
+     * @return the Agreements made, in the order in which they were matched
      * @throws IOException
      */
     public ArrayList<Agreement> readOrdersFile(String ordersFileName) throws IOException {
         int date = this.exchange.getDate();
 
-        BufferedReader br = null;
-        String line = "";
         String inputCsvFile = ordersFileName + Integer.toString(date) + ".csv";
-        StringBuilder stringBuilder = new StringBuilder();
+        ArrayList<Agreement> agreementArrayList = new ArrayList<Agreement>();
         try {
             LOGGER.debug("Reading file: {}", inputCsvFile);
-            br = new BufferedReader(new FileReader(inputCsvFile));
-
-            boolean skipHeader = false;
-            while ((line = br.readLine()) != null) {
-
-                if (skipHeader == false) {
-                    LOGGER.debug("Skipping Header");
-                    skipHeader = true;
-                    continue;
-                }
-
-                stringBuilder = orderToExchange(line, stringBuilder);
+            OrderLineHandler orderLineHandler = new OrderLineHandler(agreementArrayList::add);
+            if (this.orderParsingPipeline != null) {
+                this.orderParsingPipeline.read(Paths.get(inputCsvFile), orderLineHandler);
+            } else {
+                this.mappedLineReader.read(Paths.get(inputCsvFile), orderLineHandler);
             }
+            if (this.partitionedExchange != null) this.partitionedExchange.drainTo(agreementArrayList::add);
+            if (this.rejectsFileName != null) writeRejectsFile(date);
 
-        } catch (FileNotFoundException e) {
+        } catch (NoSuchFileException e) {
             e.printStackTrace();
             LOGGER.error("File not found: {}", inputCsvFile);
         } catch (IOException e) {
             e.printStackTrace();
-        } finally {
-            if (br != null) {
-                try {
-                    br.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
         }
 
-        return stringToAgreements(stringBuilder.toString());
+        return agreementArrayList;
     }
 
     /**
-     * Once it has been established that the inputs are valid for the order, the order is added to the exchange
-     * @param line
-     * @param stringBuilder
-     * @return
+     * Skips the header, then adds the order on each following line to the exchange
      */
-    public  StringBuilder orderToExchange(String line, StringBuilder stringBuilder) {
-        try {
-            Order newOrder = extractOrderData(line);
-            if (checkCustomerInventory(newOrder) == true) {
-                String matchingOrderResult = this.exchange.findMatchingOrder(newOrder);
-                LOGGER.info("Output Trade: {}", matchingOrderResult);
-
-                if (!matchingOrderResult.equals("No Trades Matched")) {
-                    if (stringBuilder.length() != 0) stringBuilder.append(";");
-                    stringBuilder.append(matchingOrderResult);
-                }
+    private class OrderLineHandler implements MappedLineReader.LineHandler, OrderParsingPipeline.ParsedLineHandler {
+        private final AgreementSink agreementSink;
+        private boolean skipHeader;
 
-            } else {
-                LOGGER.error("Invalid order: {}", newOrder.toString());
-            }
-
-        } catch (IllegalArgumentException e){
-            LOGGER.error("Order not processed due to unrecognised input");
+        private OrderLineHandler(AgreementSink agreementSink) {
+            this.agreementSink = agreementSink;
+            this.skipHeader = false;
         }
 
-        return stringBuilder;
-    }
-
-    private  boolean checkCustomerInventory(Order newOrder) {
-        String direction = newOrder.getDirection();
-        if (direction.equals("BUY")) {
-            LOGGER.debug("Checking BUY direction viability");
-            CashCheck cashCheck = CashCheck.builder()
-                .cash(newOrder.getLimitPrice())
-                .customer(newOrder.getCustomer())
-                .build();
-            return newOrder.getCustomer().checkSufficientCash(cashCheck);
-        } else if (direction.equals("SELL")) {
-            LOGGER.debug("Checking SELL direction viability");
-            TickerQuantityPair tickerQuantityPair = TickerQuantityPair.builder()
-                .customer(newOrder.getCustomer())
-                .quantity(newOrder.getQuantity())
-                .ticker(newOrder.getTicker())
-                .build();
-            return newOrder.getCustomer().checkSufficientShares(tickerQuantityPair);
-        } else return false;
-    }
-
-    private  Order extractOrderData(String line) throws IllegalArgumentException {
-        try {
-            String csvSplitBy = ",";
-            String[] csvLine = line.split(csvSplitBy);
-            if (csvLine.length != 9) throw new IllegalArgumentException("Exactly 9 arguments required, "
-                        + csvLine.length + " arguments inputted" );
-            String customerName = csvLine[1];
-
-            LOGGER.debug("customerName, {}", customerName);
-            Customer customer = this.customerHashMap.get(customerName);
-
-            LOGGER.debug("Creating new Order object from extracted row data");
-            Order newOrder = createOrder(csvLine, customer);
-
-            if (!determineInputValidity(newOrder)) throw new IllegalArgumentException();
-            this.orderIdSet.add(newOrder.getOrderId());
-            LOGGER.info("New Order object created from extracted row data, {}", newOrder.toString());
-            return newOrder;
+        public void onLine(ByteBuffer buffer, int start, int end) {
+            if (this.skipHeader == false) {
+                LOGGER.debug("Skipping Header");
+                this.skipHeader = true;
+                return;
+            }
+            orderToExchange(buffer, start, end, this.agreementSink);
+        }
 
-        } catch (IllegalArgumentException e) {
-            throw new IllegalArgumentException();
+        public void onParsedLine(Order parsedOrder, ByteBuffer buffer, int start, int end) {
+            if (parsedOrder == null || this.skipHeader == false) {
+                onLine(buffer, start, end);
+            } else {
+                parsedOrderToExchange(parsedOrder, buffer, start, end, this.agreementSink);
+            }
         }
     }
 
-    private  Order createOrder(String[] csvLine, Customer customer) {
-        Order newOrder = Order.builder()
-            .customer(customer)
-            .orderId(stringToInteger(csvLine[0]))
-            .direction(csvLine[2])
-            .quantity(stringToInteger(csvLine[3]))
-            .ticker(csvLine[4])
-            .type(typeToString(csvLine[5]))
-            .limitPrice(stringToDouble(csvLine[6]))
-            .timeInForce(csvLine[7])
-            .triggerPrice(stringToDouble(csvLine[8]))
-            .build();
-        return newOrder;
+    /**
+     * Once it has been established that the inputs are valid for the order, the order is added to the exchange. When
+     * orders are matched by a PartitionedExchange, the Agreements are delivered when it is drained instead of to
+     * agreementSink
+     * @param line
+     * @param agreementSink: receives each Agreement made by the order
+     */
+    public  void orderToExchange(String line, AgreementSink agreementSink) {
+        byte[] lineBytes = line.getBytes(Charset.defaultCharset());
+        orderToExchange(ByteBuffer.wrap(lineBytes), 0, lineBytes.length, agreementSink);
     }
 
-    private int stringToInteger(String inputString) {
-        try {
-            return Integer.parseInt(inputString);
-        } catch( NumberFormatException e ) {
-            LOGGER.error("Invalid string to integer conversion: {}", inputString);
-            throw new IllegalArgumentException();
+    /**
+     * @param buffer
+     * @param start: index of the first byte of the line
+     * @param end: index after the last byte of the line
+     * @param agreementSink: receives each Agreement made by the order
+     */
+    public  void orderToExchange(ByteBuffer buffer, int start, int end, AgreementSink agreementSink) {
+        StageLatencies stageLatencies = this.exchange.getStageLatencies();
+        long startTime = System.nanoTime();
+        Order newOrder = this.orderCsvParser.parse(buffer, start, end);
+        if (newOrder != null && isReplayedOrder(newOrder)) return;
+        RejectReason rejectReason = null;
+        if (newOrder == null) {
+            rejectReason = this.orderCsvParser.getRejectReason();
+        } else {
+            rejectReason = validateOrder(newOrder);
+        }
+        if (rejectReason != null) {
+            stageLatencies.record(StageLatencies.Stage.PARSE_AND_VALIDATE, startTime);
+            rejectInvalidInput(rejectReason, buffer, start, end);
+            return;
         }
+        acceptOrderId(newOrder);
+        startTime = stageLatencies.record(StageLatencies.Stage.PARSE_AND_VALIDATE, startTime);
+        validOrderToExchange(newOrder, buffer, start, end, agreementSink, startTime);
     }
 
-    private  double stringToDouble(String inputString) {
-        double returnVal = 0.0;
-        if (!inputString.equals("NULL")) {
-            try {
-                returnVal = Double.parseDouble(inputString);
-            } catch( NumberFormatException e ) {
-                LOGGER.error("Invalid price input format: {}", inputString);
-                throw new IllegalArgumentException();
-            }
-        } else {
-            returnVal = -1.0; // Default value for Market orders
+    /**
+     * Adds an order which an OrderParsingPipeline worker has parsed and found to pass staticRejectReason to the
+     * exchange, once it has passed the duplicate order id check
+     * @param parsedOrder
+     * @param buffer
+     * @param start: index of the first byte of the line
+     * @param end: index after the last byte of the line
+     * @param agreementSink: receives each Agreement made by the order
+     */
+    private void parsedOrderToExchange(Order parsedOrder, ByteBuffer buffer, int start, int end,
+        AgreementSink agreementSink) {
+        if (isReplayedOrder(parsedOrder)) return;
+        if (isDuplicateOrderId(parsedOrder)) {
+            rejectInvalidInput(RejectReason.DUPLICATE_ORDER_ID, buffer, start, end);
+            return;
         }
-        return returnVal;
+        acceptOrderId(parsedOrder);
+        validOrderToExchange(parsedOrder, buffer, start, end, agreementSink, System.nanoTime());
     }
 
-    private  String typeToString(String type) {
-        if (type.equals("STOP-LIMIT")) {
-            return "LIMIT";
-        } else if (type.equals("STOP-MARKET")) {
-            return "MARKET";
-        } else if (type.equals("MARKET") || type.equals("LIMIT") ){
-            return type;
+    private void validOrderToExchange(Order newOrder, ByteBuffer buffer, int start, int end,
+        AgreementSink agreementSink, long startTime) {
+        StageLatencies stageLatencies = this.exchange.getStageLatencies();
+        boolean sufficientInventory = checkCustomerInventory(newOrder);
+        startTime = stageLatencies.record(StageLatencies.Stage.RISK_CHECK, startTime);
+        if (sufficientInventory == true) {
+            this.exchange.getMetrics().orderAccepted();
+            if (this.orderJournal != null) {
+                journalOrder(newOrder);
+                startTime = stageLatencies.record(StageLatencies.Stage.JOURNAL, startTime);
+            }
+            if (this.partitionedExchange != null) {
+                this.partitionedExchange.submit(newOrder);
+            } else {
+                int agreementsMade = this.exchange.findMatchingOrder(newOrder, agreementSink);
+                stageLatencies.record(StageLatencies.Stage.MATCHING, startTime);
+                LOGGER.info("Trades matched: {}", agreementsMade);
+            }
         } else {
-            LOGGER.error("Invalid order type input: {}", type);
-            throw new IllegalArgumentException();
+            rejectOrder(insufficientInventoryReason(newOrder), buffer, start, end);
+            LOGGER.error("Invalid order: {}", newOrder.toString());
         }
-
     }
 
-    private  boolean determineInputValidity(Order newOrder) {
-        if (!validOrderId(newOrder)) return false;
-        if (!validCustomerId(newOrder)) return false;
-        if (!validDirection(newOrder)) return false;
-        if (!validQuantity(newOrder)) return false;
-        if (!validTicker(newOrder)) return false;
-        if (!validType(newOrder)) return false;
-        if (!validLimitPrice(newOrder)) return false;
-        if (!validTimeInForce(newOrder)) return false;
-        if (!validTriggerPrice(newOrder)) return false;
-        return true;
+    private void rejectInvalidInput(RejectReason rejectReason, ByteBuffer buffer, int start, int end) {
+        rejectOrder(rejectReason, buffer, start, end);
+        LOGGER.error("Order not processed due to unrecognised input");
     }
 
-    private  boolean validOrderId(Order newOrder) {
-        try {
-            if (orderIdSet.contains(newOrder.getOrderId())) {
-                LOGGER.error("Duplicate order id input: {}", newOrder.getOrderId());
-                throw new IllegalArgumentException();
-            } else {
-                return true;
-            }
-        } catch (NullPointerException e) {
-            throw new IllegalArgumentException();
-        }
+    /**
+     * Counts the rejected order, and keeps its row for the day's rejects file
+     * @param rejectReason
+     * @param buffer
+     * @param start: index of the first byte of the row
+     * @param end: index after the last byte of the row
+     */
+    private void rejectOrder(RejectReason rejectReason, ByteBuffer buffer, int start, int end) {
+        this.exchange.getMetrics().orderRejected(rejectReason);
+        if (this.rejectsFileName == null) return;
+        byte[] rowBytes = new byte[end - start];
+        for (int i = 0; i < rowBytes.length; i++) rowBytes[i] = buffer.get(start + i);
+        this.rejectedRows.append(rejectReason.name()).append(',')
+            .append(new String(rowBytes, Charset.defaultCharset())).append('\n');
     }
 
-    private boolean validLimitPrice(Order newOrder) {
-        if (newOrder.getLimitPrice() <= 0 && newOrder.getLimitPrice() != -1) {
-            LOGGER.error("Invalid limit price {}", newOrder.getLimitPrice());
-            throw new IllegalArgumentException();
-        } else {
-            return true;
-        }
+    /**
+     * Writes the rows rejected while reading the day's orders file, each after the reason it was rejected
+     * @param date
+     * @throws IOException
+     */
+    private void writeRejectsFile(int date) throws IOException {
+        Path outputCsvFile = Paths.get(this.rejectsFileName + Integer.toString(date) + ".csv");
+        if (outputCsvFile.getParent() != null) Files.createDirectories(outputCsvFile.getParent());
+        LOGGER.debug("Opening writer for: {}", outputCsvFile);
+        ChannelFileWriter writer = this.outputWriter;
+        writer.open(outputCsvFile);
+        writer.append("REJECT REASON,ORDER ID,CUSTOMER NAME,DIRECTION,QUANTITY,TICKER,TYPE,LIMIT PRICE,TIME IN FORCE,"
+            + "TRIGGER PRICE");
+        writer.append('\n');
+        writer.append(this.rejectedRows);
+        writer.close();
+        this.rejectedRows.setLength(0);
+        LOGGER.debug("Closing writer");
     }
 
-    private boolean validTriggerPrice(Order newOrder) {
-        if (newOrder.getTriggerPrice() <= 0 && newOrder.getTriggerPrice() != -1) {
-            LOGGER.error("Invalid trigger price {}", newOrder.getTriggerPrice());
-            throw new IllegalArgumentException();
-        } else {
-            return true;
-        }
+    private  boolean checkCustomerInventory(Order newOrder) {
+        Direction direction = newOrder.getDirection();
+        if (direction == Direction.BUY) {
+            LOGGER.debug("Checking BUY direction viability");
+            if (!newOrder.hasLimitPrice()) return true; // MARKET orders have no price to check cash against
+            CashCheck cashCheck = CashCheck.builder()
+                .cash(newOrder.getLimitPrice())
+                .customer(newOrder.getCustomer())
+                .build();
+            return newOrder.getCustomer().checkSufficientCash(cashCheck);
+        } else if (direction == Direction.SELL) {
+            LOGGER.debug("Checking SELL direction viability");
+            TickerQuantityPair tickerQuantityPair = TickerQuantityPair.builder()
+                .customer(newOrder.getCustomer())
+                .quantity(newOrder.getQuantity())
+                .tickerId(newOrder.getTickerId())
+                .build();
+            return newOrder.getCustomer().checkSufficientShares(tickerQuantityPair);
+        } else return false;
     }
 
-    private boolean validTicker(Order newOrder) {
+    /**
+     * Accepted orders are journaled before they are matched, so that every order which may have changed an OrderBook
+     * can be replayed
+     * @param newOrder
+     */
+    private void journalOrder(Order newOrder) {
         try {
-            if (!this.tickerSet.contains(newOrder.getTicker())) {
-                LOGGER.error("Unrecognised ticker input: {}", newOrder.getTicker());
-                throw new IllegalArgumentException();
-            } else {
-                return true;
-            }
-        } catch (NullPointerException e) {
-            throw new IllegalArgumentException();
+            this.orderJournal.append(newOrder, this.exchange.getDate());
+        } catch (IOException e) {
+            LOGGER.error("Order {} could not be journaled: {}", newOrder.getOrderId(), e.toString());
+            throw new IllegalStateException("Order journal write failed", e);
         }
     }
 
-    private  boolean validCustomerId(Order newOrder) {
-        try {
-            if (newOrder.getCustomer() == null) {
-                LOGGER.error("Unrecognised customer id input: {}", newOrder.getCustomer().getName());
-                throw new IllegalArgumentException();
-            } else {
-                return true;
-            }
-        } catch (NullPointerException e) {
-            throw new IllegalArgumentException();
-        }
+    private static RejectReason insufficientInventoryReason(Order newOrder) {
+        if (newOrder.getDirection() == Direction.BUY) return RejectReason.INSUFFICIENT_CASH;
+        return RejectReason.INSUFFICIENT_SHARES;
     }
 
-    private  boolean validDirection(Order newOrder) {
-        if (!newOrder.getDirection().equals("BUY") && !newOrder.getDirection().equals("SELL")) {
-            LOGGER.error("Invalid Direction input: {}", newOrder.getDirection());
-            return false;
-        }
-        return true;
+    private void acceptOrderId(Order newOrder) {
+        this.orderIdSet.add(newOrder.getOrderId());
+        LOGGER.info("New Order object created from extracted row data, {}", newOrder);
     }
 
-    private  boolean validType(Order newOrder) {
-        if (!newOrder.getType().equals("LIMIT") && !newOrder.getType().equals("MARKET")) {
-            LOGGER.error("Invalid Type: {}", newOrder.getType());
-            return false;
-        }
-        return true;
+    /**
+     * @param newOrder
+     * @return the reason the order is rejected, or null if it is valid
+     */
+    private  RejectReason validateOrder(Order newOrder) {
+        if (isDuplicateOrderId(newOrder)) return RejectReason.DUPLICATE_ORDER_ID;
+        return staticRejectReason(newOrder, true);
     }
 
-    private  boolean validQuantity(Order newOrder) {
-        if (newOrder.getQuantity() <= 0) {
-            LOGGER.error("Invalid Quantity: {}", newOrder.getQuantity());
-            return false;
+    /**
+     * @param newOrder
+     * @return true the first time an order replayed from the OrderJournal is read again, which is then skipped
+     */
+    private boolean isReplayedOrder(Order newOrder) {
+        if (this.replayedOrderIds != null && this.replayedOrderIds.remove(newOrder.getOrderId())) {
+            LOGGER.debug("Skipping order already replayed from the journal: {}", newOrder.getOrderId());
+            return true;
         }
-        return true;
+        return false;
     }
 
-    private  boolean validTimeInForce(Order newOrder) {
-        if (!newOrder.getTimeInForce().equals("FOK") && !newOrder.getTimeInForce().equals("GTC")) {
-            LOGGER.error("Invalid Time In Force: {}", newOrder.getTimeInForce());
-            return false;
+    private  boolean isDuplicateOrderId(Order newOrder) {
+        if (this.orderIdSet.contains(newOrder.getOrderId())) {
+            LOGGER.error("Duplicate order id input: {}", newOrder.getOrderId());
+            return true;
         }
-        return true;
+        return false;
     }
 
-    public  ArrayList<Agreement> stringToAgreements(String matchedOrders) {
-        ArrayList<Agreement> agreementsList = new ArrayList<Agreement>();
-        String csvSplitBy = ";";
-        String[] csvLine = matchedOrders.split(csvSplitBy);
-
-        if (matchedOrders.length() == 0) return agreementsList;
-        for (String agreement : csvLine) {
-            String[] agreementLine = agreement.split(",");
-            Agreement newAgreement = createAgreement(agreementLine);
-            agreementsList.add(newAgreement);
+    /**
+     * The checks which do not depend on earlier orders, so that they can be made on any thread
+     * @param newOrder
+     * @param logging: false to reject the order without logging why
+     * @return the reason the order is rejected, or null if it passes
+     */
+    static RejectReason staticRejectReason(Order newOrder, boolean logging) {
+        if (newOrder.getCustomer() == null) {
+            if (logging) LOGGER.error("Unrecognised customer id input for order {}", newOrder.getOrderId());
+            return RejectReason.UNKNOWN_CUSTOMER;
+        } else if (newOrder.getQuantity() <= 0) {
+            if (logging) LOGGER.error("Invalid Quantity: {}", newOrder.getQuantity());
+            return RejectReason.INVALID_QUANTITY;
+        } else if (newOrder.getTickerId() == ReferenceData.UNKNOWN_ID) {
+            if (logging) LOGGER.error("Unrecognised ticker input: {}", newOrder.getTicker());
+            return RejectReason.UNKNOWN_TICKER;
+        } else if (newOrder.hasLimitPrice() && newOrder.getLimitPrice() <= 0) {
+            if (logging) LOGGER.error("Invalid limit price {}", newOrder.getLimitPrice());
+            return RejectReason.INVALID_LIMIT_PRICE;
+        } else if (newOrder.getType() == OrderType.LIMIT && !newOrder.hasLimitPrice()) {
+            if (logging) LOGGER.error("Missing limit price for LIMIT order {}", newOrder.getOrderId());
+            return RejectReason.INVALID_LIMIT_PRICE;
+        } else if (newOrder.isStopOrder() && newOrder.getTriggerPrice() <= 0) {
+            if (logging) LOGGER.error("Invalid trigger price {}", newOrder.getTriggerPrice());
+            return RejectReason.INVALID_TRIGGER_PRICE;
+        } else {
+            return null;
         }
-        return agreementsList;
     }
 
     private  Agreement createAgreement(String[] csvLine) {
         Agreement newAgreement = Agreement.builder()
-                .buyCustomer(this.customerHashMap.get(csvLine[0]))
-                .sellCustomer(this.customerHashMap.get(csvLine[1]))
+                .buyCustomer(this.referenceData.getCustomer(csvLine[0]))
+                .sellCustomer(this.referenceData.getCustomer(csvLine[1]))
                 .ticker(csvLine[2])
+                .tickerId(this.referenceData.getTickerId(csvLine[2]))
                 .matchQuantity(Integer.parseInt(csvLine[3]))
                 .matchPrice(Double.parseDouble(csvLine[4]))
                 .dateOfAgreement(Integer.parseInt(csvLine[5]))
@@ -379,78 +429,100 @@ public class ReadWriteFiles {
     }
 
     /**
-     * The new agreements are added to the missions file, which will be settled once they mature at the appropriate date
-     * @param missionsArrayList
+     * Writes the missions file for the day: every mission in the store, which will be settled once they mature at the
+     * appropriate date. It is read again only if the simulation is restarted from the next day
+     * @param missionStore
      * @throws IOException
      */
-    public  void writeMissionsToFile(ArrayList<Agreement> missionsArrayList) throws IOException {
-        FileWriter writer = setupMissionWriter();
-        LOGGER.debug("Missions list size: {}", missionsArrayList.size());
-        for (Agreement mission : missionsArrayList) {
-            writer.append(mission.toString());
-            writer.append('\n');
+    public  void writeMissionsToFile(MissionStore missionStore) throws IOException {
+        ChannelFileWriter writer = setupMissionWriter();
+        LOGGER.debug("Missions list size: {}", missionStore.size());
+        StageLatencies stageLatencies = this.exchange.getStageLatencies();
+        for (ArrayList<Agreement> bucket : missionStore.buckets()) {
+            for (Agreement mission : bucket) {
+                long startTime = System.nanoTime();
+                this.outputRecord.setLength(0);
+                mission.appendTo(this.outputRecord);
+                this.outputRecord.append('\n');
+                writer.append(this.outputRecord);
+                stageLatencies.record(StageLatencies.Stage.MISSION_OUTPUT, startTime);
+            }
         }
         closeMissionWriter(writer);
+        this.exchange.getMetrics().setPendingMissions(missionStore.size());
     }
 
-    private  FileWriter setupMissionWriter() throws IOException  {
+    private  ChannelFileWriter setupMissionWriter() throws IOException  {
         int date = this.exchange.getDate();
         String outputCsvFile =
             "src/main/resources/Program Arguments/Missions/missions"
                 + Integer.toString(date) + ".csv";
-        LOGGER.debug("Opening FileWriter for: {}", outputCsvFile);
-        FileWriter writer = new FileWriter(outputCsvFile);
+        LOGGER.debug("Opening writer for: {}", outputCsvFile);
+        ChannelFileWriter writer = this.outputWriter;
+        writer.open(Paths.get(outputCsvFile));
         writer.append("BUY CUSTOMER,SELL CUSTOMER,TICKER,MATCH QUANTITY,MATCH PRICE,DATE OF AGREEMENT");
         writer.append('\n');
 
         return writer;
     }
 
-    private  void closeMissionWriter(FileWriter writer)  throws IOException {
-        writer.flush();
+    private  void closeMissionWriter(ChannelFileWriter writer)  throws IOException {
         writer.close();
-        LOGGER.debug("Closing FileWriter");
+        LOGGER.debug("Closing writer");
     }
 
     /**
-     * Iterates through missions csv file to check whether the current date is equal to T+2. If so, then the mission is
-     * settled and added to a separate csv file for settlements
-     * @param agreementArrayList
-     * @return
+     * Takes the missions due to settle today, the date of their agreement plus the settlement cycle, out of the store.
+     * Each is added to a separate csv file for settlements, and the day's missions are netted so that each account is
+     * settled once
+     * @param missionStore
      * @throws IOException
      */
-    public  ArrayList<Agreement> settleAgreements(ArrayList<Agreement> agreementArrayList) throws IOException {
+    public  void settleMissions(MissionStore missionStore) throws IOException {
         int date = this.exchange.getDate();
-        FileWriter writer = setupSettlementWriter(date);
-        ESMA esma = new ESMA();
-        ArrayList<Agreement> missionsForRemoval = new ArrayList<Agreement>();
-        for (Agreement agreement : agreementArrayList) {
-            if (agreement.getDateOfAgreement()+2 == date) {
-                writer.append(esma.facilitateTransaction(agreement).toString());
-                writer.append('\n');
-                missionsForRemoval.add(agreement);
+        ChannelFileWriter writer = setupSettlementWriter(date);
+        ESMA esma = new ESMA(missionStore.getSettlementCycle());
+        if (this.partitionedSettlement != null) {
+            ArrayList<Agreement> dueMissions = missionStore.takeDue(date);
+            for (StringBuilder settlementRecords : this.partitionedSettlement.settle(dueMissions, esma,
+                this.exchange.getStageLatencies())) {
+                writer.append(settlementRecords);
             }
+            for (int i = 0; i < dueMissions.size(); i++) this.exchange.getMetrics().settlementCompleted();
+            closeSettlementWriter(writer);
+            return;
+        }
+        SettlementNetting settlementNetting = new SettlementNetting();
+        StageLatencies stageLatencies = this.exchange.getStageLatencies();
+        for (Agreement agreement : missionStore.takeDue(date)) {
+            long startTime = System.nanoTime();
+            LOGGER.info("New mission to be settled: {}", agreement);
+            settlementNetting.add(agreement);
+            this.outputRecord.setLength(0);
+            esma.createSettlement(agreement).appendTo(this.outputRecord);
+            this.outputRecord.append('\n');
+            writer.append(this.outputRecord);
+            stageLatencies.record(StageLatencies.Stage.SETTLEMENT, startTime);
+            this.exchange.getMetrics().settlementCompleted();
         }
+        settlementNetting.settle();
         closeSettlementWriter(writer);
-
-        for (Agreement mission : missionsForRemoval) agreementArrayList.remove(mission);
-        return agreementArrayList;
     }
 
-    private  FileWriter setupSettlementWriter(int date) throws IOException  {
+    private  ChannelFileWriter setupSettlementWriter(int date) throws IOException  {
         String outputCsvFile =
             "src/main/resources/Program Arguments/Settlements/settlements"
                 + Integer.toString(date) + ".csv";
-        LOGGER.debug("Opening Settlement FileWriter for: {}", outputCsvFile);
-        FileWriter writer = new FileWriter(outputCsvFile);
+        LOGGER.debug("Opening Settlement writer for: {}", outputCsvFile);
+        ChannelFileWriter writer = this.outputWriter;
+        writer.open(Paths.get(outputCsvFile));
         writer.append("BUY ID,TICKER,MATCH QUANTITY,BUY PB,BUY EB,SELL ID,SELL RECEIVED,SELL PB,SELL EB,SETTLEMENT DATE");
         writer.append('\n');
         return writer;
     }
 
-    private  void closeSettlementWriter(FileWriter writer)  throws IOException {
-        writer.flush();
+    private  void closeSettlementWriter(ChannelFileWriter writer)  throws IOException {
         writer.close();
-        LOGGER.debug("Closing Settlement FileWriter");
+        LOGGER.debug("Closing Settlement writer");
     }
 }
@@ -0,0 +1,224 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Registry of the tickers, Broker/Dealers and Customers known to the exchange. Each is given a dense integer id,
+ * in the order in which it is loaded, so that the engine, the inventory checks and settlement can index arrays by
+ * id. Names are only resolved to ids here, when reading input files, and back to names when writing output. Ticker
+ * and Customer names may also be resolved straight from the bytes of an input file, in the default charset, without
+ * first being decoded into Strings
+ */
+@Log4j2
+public class ReferenceData {
+
+    public static final int UNKNOWN_ID = -1;
+
+    private final HashMap<String, Integer> tickerIds;
+    private final ArrayList<String> tickers;
+    private final HashMap<String, Integer> brokerDealerIds;
+    private final ArrayList<BrokerDealer> brokerDealers;
+    private final HashMap<String, Integer> customerIds;
+    private final ArrayList<Customer> customers;
+    private final NameTable tickerNames;
+    private final NameTable customerNames;
+
+    public ReferenceData() {
+        this.tickerIds = new HashMap<String, Integer>();
+        this.tickers = new ArrayList<String>();
+        this.brokerDealerIds = new HashMap<String, Integer>();
+        this.brokerDealers = new ArrayList<BrokerDealer>();
+        this.customerIds = new HashMap<String, Integer>();
+        this.customers = new ArrayList<Customer>();
+        this.tickerNames = new NameTable();
+        this.customerNames = new NameTable();
+    }
+
+    /**
+     * @param ticker
+     * @return the id of the ticker, which is unchanged if the ticker was already registered
+     */
+    public int addTicker(String ticker) {
+        Integer tickerId = this.tickerIds.get(ticker);
+        if (tickerId == null) {
+            tickerId = this.tickers.size();
+            this.tickers.add(ticker);
+            this.tickerIds.put(ticker, tickerId);
+            this.tickerNames.add(ticker, tickerId);
+        }
+        return tickerId;
+    }
+
+    public int getTickerId(String ticker) {
+        return idOrUnknown(this.tickerIds.get(ticker));
+    }
+
+    /**
+     * @param buffer
+     * @param start: index of the first byte of the ticker
+     * @param end: index after the last byte of the ticker
+     * @return the id of the ticker, or UNKNOWN_ID
+     */
+    public int getTickerId(ByteBuffer buffer, int start, int end) {
+        return this.tickerNames.get(buffer, start, end);
+    }
+
+    public String getTicker(int tickerId) {
+        return this.tickers.get(tickerId);
+    }
+
+    public int getTickerCount() {
+        return this.tickers.size();
+    }
+
+    public int nextBrokerDealerId() {
+        return this.brokerDealers.size();
+    }
+
+    public void addBrokerDealer(BrokerDealer brokerDealer) {
+        checkNextId(brokerDealer.getId(), nextBrokerDealerId(), brokerDealer.getName());
+        this.brokerDealers.add(brokerDealer);
+        this.brokerDealerIds.put(brokerDealer.getName(), brokerDealer.getId());
+    }
+
+    /**
+     * @param name
+     * @return the Broker/Dealer, or null if there is no Broker/Dealer with that name
+     */
+    public BrokerDealer getBrokerDealer(String name) {
+        Integer brokerDealerId = this.brokerDealerIds.get(name);
+        if (brokerDealerId == null) return null;
+        return this.brokerDealers.get(brokerDealerId);
+    }
+
+    public BrokerDealer getBrokerDealer(int brokerDealerId) {
+        return this.brokerDealers.get(brokerDealerId);
+    }
+
+    public int getBrokerDealerCount() {
+        return this.brokerDealers.size();
+    }
+
+    public int nextCustomerId() {
+        return this.customers.size();
+    }
+
+    public void addCustomer(Customer customer) {
+        checkNextId(customer.getId(), nextCustomerId(), customer.getName());
+        this.customers.add(customer);
+        this.customerIds.put(customer.getName(), customer.getId());
+        this.customerNames.add(customer.getName(), customer.getId());
+    }
+
+    /**
+     * @param name
+     * @return the Customer, or null if there is no Customer with that name
+     */
+    public Customer getCustomer(String name) {
+        Integer customerId = this.customerIds.get(name);
+        if (customerId == null) return null;
+        return this.customers.get(customerId);
+    }
+
+    /**
+     * @param buffer
+     * @param start: index of the first byte of the name
+     * @param end: index after the last byte of the name
+     * @return the id of the Customer, or UNKNOWN_ID
+     */
+    public int getCustomerId(ByteBuffer buffer, int start, int end) {
+        return this.customerNames.get(buffer, start, end);
+    }
+
+    public Customer getCustomer(int customerId) {
+        return this.customers.get(customerId);
+    }
+
+    public int getCustomerCount() {
+        return this.customers.size();
+    }
+
+    private static int idOrUnknown(Integer id) {
+        if (id == null) return UNKNOWN_ID;
+        return id;
+    }
+
+    private static void checkNextId(int id, int nextId, String name) {
+        if (id != nextId) {
+            LOGGER.error("{} registered with id {}, expected id {}", name, id, nextId);
+            throw new IllegalArgumentException();
+        }
+    }
+
+    /**
+     * Open addressing hash table from the encoded bytes of a name to its id, so that a name can be looked up where it
+     * lies in a buffer
+     */
+    private static class NameTable {
+        private byte[][] names;
+        private int[] ids;
+        private int size;
+
+        private NameTable() {
+            this.names = new byte[16][];
+            this.ids = new int[16];
+            this.size = 0;
+        }
+
+        private void add(String name, int id) {
+            if ((this.size + 1) * 2 > this.names.length) resize();
+            byte[] encodedName = name.getBytes(Charset.defaultCharset());
+            int slot = hash(ByteBuffer.wrap(encodedName), 0, encodedName.length) & (this.names.length - 1);
+            while (this.names[slot] != null) {
+                if (Arrays.equals(this.names[slot], encodedName)) {
+                    this.ids[slot] = id;
+                    return;
+                }
+                slot = (slot + 1) & (this.names.length - 1);
+            }
+            this.names[slot] = encodedName;
+            this.ids[slot] = id;
+            this.size++;
+        }
+
+        private int get(ByteBuffer buffer, int start, int end) {
+            int slot = hash(buffer, start, end) & (this.names.length - 1);
+            while (this.names[slot] != null) {
+                if (matches(this.names[slot], buffer, start, end)) return this.ids[slot];
+                slot = (slot + 1) & (this.names.length - 1);
+            }
+            return UNKNOWN_ID;
+        }
+
+        private void resize() {
+            byte[][] oldNames = this.names;
+            int[] oldIds = this.ids;
+            this.names = new byte[oldNames.length * 2][];
+            this.ids = new int[oldIds.length * 2];
+            for (int i = 0; i < oldNames.length; i++) {
+                if (oldNames[i] == null) continue;
+                int slot = hash(ByteBuffer.wrap(oldNames[i]), 0, oldNames[i].length) & (this.names.length - 1);
+                while (this.names[slot] != null) slot = (slot + 1) & (this.names.length - 1);
+                this.names[slot] = oldNames[i];
+                this.ids[slot] = oldIds[i];
+            }
+        }
+
+        private static int hash(ByteBuffer buffer, int start, int end) {
+            int hash = 0x811c9dc5;
+            for (int i = start; i < end; i++) hash = (hash ^ buffer.get(i)) * 0x01000193;
+            return hash ^ (hash >>> 16);
+        }
+
+        private static boolean matches(byte[] name, ByteBuffer buffer, int start, int end) {
+            if (name.length != end - start) return false;
+            for (int i = 0; i < name.length; i++) {
+                if (name[i] != buffer.get(start + i)) return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+public enum RejectReason {
+    /** The row does not have exactly 9 fields */
+    INVALID_INPUT,
+    INVALID_ORDER_ID,
+    INVALID_DIRECTION,
+    INVALID_QUANTITY,
+    INVALID_TYPE,
+    INVALID_LIMIT_PRICE,
+    INVALID_TIME_IN_FORCE,
+    INVALID_TRIGGER_PRICE,
+    DUPLICATE_ORDER_ID,
+    UNKNOWN_CUSTOMER,
+    UNKNOWN_TICKER,
+    INSUFFICIENT_CASH,
+    INSUFFICIENT_SHARES
+}
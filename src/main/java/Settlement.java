@@ -1,4 +1,3 @@
-import java.text.DecimalFormat;
 import lombok.Builder;
 import lombok.Value;
 
@@ -12,38 +11,39 @@ public class Settlement {
     private final Customer sellCustomer;
     private final int dateOfSettlement;
     private final double matchPrice;
+    /** The fees paid on the trade, and what the seller receives once its fees are taken, worked out when it settles */
+    private final double buyPrimeBrokerFee;
+    private final double buyExecutingBrokerFee;
+    private final double sellPrimeBrokerFee;
+    private final double sellExecutingBrokerFee;
+    private final double sellReceived;
 
     public String toString(){
-        DecimalFormat numberFormat = new DecimalFormat("#.00");
-
-        String buyPbFee = numberFormat.format(this.buyCustomer.getPrimeBroker().getPrimeBrokerFees()*matchPrice);
-        String buyEbFee = numberFormat.format(this.buyCustomer.getExecutingBroker().getExecutingBrokerFees()*matchPrice);
-
-        String sellPbFee = numberFormat.format(this.sellCustomer.getPrimeBroker().getPrimeBrokerFees()*matchPrice);
-        String sellEbFee = numberFormat.format(this.sellCustomer.getExecutingBroker().getExecutingBrokerFees()*matchPrice);
-
-        double deductedCashRecieved = this.matchPrice-((this.sellCustomer.getPrimeBroker().getPrimeBrokerFees()*this.matchPrice) +
-            (sellCustomer.getExecutingBroker().getExecutingBrokerFees()*matchPrice));
-        String deductedCashRecievedString = numberFormat.format(deductedCashRecieved);
-
-        return this.buyCustomer.getName()+","+
-            this.ticker+ ","+
-            Integer.toString(this.matchQuantity)+","+
-            buyCustomer.getPrimeBroker().getName()+":"+
-            buyPbFee+","+
-            buyCustomer.getExecutingBroker().getName()+":"+
-            buyEbFee+","+
-
-            this.sellCustomer.getName()+","+
-
-            deductedCashRecievedString+","+
-
-            sellCustomer.getPrimeBroker().getName()+":"+
-            sellPbFee+","+
-            sellCustomer.getExecutingBroker().getName()+":"+
-            sellEbFee+","+
+        StringBuilder builder = new StringBuilder();
+        appendTo(builder);
+        return builder.toString();
+    }
 
-            Integer.toString(this.dateOfSettlement);
+    /**
+     * Appends the settlement record, as written to the settlements file, with each amount to two decimal places,
+     * without allocating
+     * @param builder
+     */
+    public void appendTo(StringBuilder builder){
+        builder.append(this.buyCustomer.getName()).append(',')
+            .append(this.ticker).append(',')
+            .append(this.matchQuantity).append(',')
+            .append(this.buyCustomer.getPrimeBroker().getName()).append(':');
+        DecimalEncoder.appendCents(builder, this.buyPrimeBrokerFee);
+        builder.append(',').append(this.buyCustomer.getExecutingBroker().getName()).append(':');
+        DecimalEncoder.appendCents(builder, this.buyExecutingBrokerFee);
+        builder.append(',').append(this.sellCustomer.getName()).append(',');
+        DecimalEncoder.appendCents(builder, this.sellReceived);
+        builder.append(',').append(this.sellCustomer.getPrimeBroker().getName()).append(':');
+        DecimalEncoder.appendCents(builder, this.sellPrimeBrokerFee);
+        builder.append(',').append(this.sellCustomer.getExecutingBroker().getName()).append(':');
+        DecimalEncoder.appendCents(builder, this.sellExecutingBrokerFee);
+        builder.append(',').append(this.dateOfSettlement);
     }
 
 }
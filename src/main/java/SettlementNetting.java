@@ -0,0 +1,235 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Nets the missions due on a day into one cash obligation per customer and per broker dealer, and one share
+ * obligation per customer and ticker, before any of them touch an Account. Each account is then written once,
+ * however many of the day's missions it took part in.
+ * The cash postings of a mission are those ESMA makes for it: the buyer pays the match price, the prime and
+ * executing brokers of both sides are paid their fees, and the seller receives the match price less its fees.
+ * Cash is held in whole minor units, so a cash obligation is the exact sum of the account's postings, and the
+ * account is left with exactly the balance settling the missions one at a time would leave it with. Shares
+ * delivered and received are totalled separately and passed to the account as one delivery and one receipt.
+ * A netting may own only one partition of the accounts, those of the broker dealers whose id falls in it, where a
+ * customer's account belongs to its prime broker. It then makes only the postings to the accounts it owns, so
+ * nettings of different partitions can settle the same missions at the same time without sharing an account.
+ * A netting settles one day's missions, from one thread
+ */
+@Log4j2
+public class SettlementNetting {
+
+    private final int partition;
+    private final int partitions;
+    private final ArrayList<CashObligation> customerCash;
+    private final ArrayList<CashObligation> brokerDealerCash;
+    private final HashMap<Long, SharesObligation> customerShares;
+    private final ArrayList<CashObligation> cashObligations;
+    private final ArrayList<SharesObligation> sharesObligations;
+    private int missions;
+
+    public SettlementNetting() {
+        this(0, 1);
+    }
+
+    /**
+     * @param partition: the partition of the accounts which the netting owns, from 0 to partitions - 1
+     * @param partitions: number of partitions the broker dealers are shared out between, by their id
+     */
+    public SettlementNetting(int partition, int partitions) {
+        if (partitions < 1 || partition < 0 || partition >= partitions) {
+            LOGGER.error("Invalid settlement partition: {} of {}", partition, partitions);
+            throw new IllegalArgumentException();
+        }
+        this.partition = partition;
+        this.partitions = partitions;
+        this.customerCash = new ArrayList<CashObligation>();
+        this.brokerDealerCash = new ArrayList<CashObligation>();
+        this.customerShares = new HashMap<Long, SharesObligation>();
+        this.cashObligations = new ArrayList<CashObligation>();
+        this.sharesObligations = new ArrayList<SharesObligation>();
+        this.missions = 0;
+    }
+
+    /**
+     * Adds the cash and shares movements of a mission to the obligations of the customers and brokers in it whose
+     * accounts the netting owns
+     * @param agreement
+     */
+    public void add(Agreement agreement) {
+        Customer buyCustomer = agreement.getBuyCustomer();
+        Customer sellCustomer = agreement.getSellCustomer();
+        BrokerDealer buyPrimeBroker = buyCustomer.getPrimeBroker();
+        BrokerDealer buyExecutingBroker = buyCustomer.getExecutingBroker();
+        BrokerDealer sellPrimeBroker = sellCustomer.getPrimeBroker();
+        BrokerDealer sellExecutingBroker = sellCustomer.getExecutingBroker();
+        double matchPrice = agreement.getMatchPrice();
+        long matchCash = Account.toMinorUnits(matchPrice);
+
+        if (owns(buyPrimeBroker)) {
+            customerCashObligation(buyCustomer).pay(matchCash);
+            brokerDealerCashObligation(buyPrimeBroker).receive(ESMA.custodialFees(buyCustomer, matchPrice));
+        }
+        if (owns(buyExecutingBroker)) {
+            brokerDealerCashObligation(buyExecutingBroker).receive(ESMA.agencyFees(buyCustomer, matchPrice));
+        }
+
+        if (owns(sellExecutingBroker)) {
+            brokerDealerCashObligation(sellExecutingBroker).receive(ESMA.agencyFees(sellCustomer, matchPrice));
+        }
+        if (owns(sellPrimeBroker)) {
+            long sellCustodialFees = ESMA.custodialFees(sellCustomer, matchPrice);
+            brokerDealerCashObligation(sellPrimeBroker).receive(sellCustodialFees);
+            customerCashObligation(sellCustomer)
+                .receive(matchCash - sellCustodialFees - ESMA.agencyFees(sellCustomer, matchPrice));
+            customerSharesObligation(sellCustomer, agreement.getTickerId()).deliver(agreement.getMatchQuantity());
+        }
+        if (owns(buyPrimeBroker)) {
+            customerSharesObligation(buyCustomer, agreement.getTickerId()).receive(agreement.getMatchQuantity());
+        }
+        this.missions++;
+    }
+
+    /**
+     * Writes every obligation to its account, once, and starts a new netting
+     */
+    public void settle() {
+        for (CashObligation cashObligation : this.cashObligations) cashObligation.settle();
+        for (SharesObligation sharesObligation : this.sharesObligations) sharesObligation.settle();
+        LOGGER.info("Netted {} missions into {} cash and {} share obligations", this.missions,
+            this.cashObligations.size(), this.sharesObligations.size());
+
+        this.customerCash.clear();
+        this.brokerDealerCash.clear();
+        this.customerShares.clear();
+        this.cashObligations.clear();
+        this.sharesObligations.clear();
+        this.missions = 0;
+    }
+
+    public int getMissions() {
+        return this.missions;
+    }
+
+    /**
+     * @return the number of accounts the missions added so far will write cash to
+     */
+    public int getCashObligations() {
+        return this.cashObligations.size();
+    }
+
+    /**
+     * @return the number of customer and ticker pairs the missions added so far will move shares in
+     */
+    public int getSharesObligations() {
+        return this.sharesObligations.size();
+    }
+
+    private boolean owns(BrokerDealer brokerDealer) {
+        return partitionOf(brokerDealer, this.partitions) == this.partition;
+    }
+
+    /**
+     * @param brokerDealer
+     * @param partitions
+     * @return the partition which owns the account of the broker dealer, and the accounts of its prime brokerage
+     * customers
+     */
+    public static int partitionOf(BrokerDealer brokerDealer, int partitions) {
+        return brokerDealer.getId() % partitions;
+    }
+
+    private CashObligation customerCashObligation(Customer customer) {
+        return cashObligation(this.customerCash, customer.getId(),
+            customer.getPrimeBroker().getCustomerAccounts().get(customer.getId()));
+    }
+
+    private CashObligation brokerDealerCashObligation(BrokerDealer brokerDealer) {
+        return cashObligation(this.brokerDealerCash, brokerDealer.getId(), brokerDealer.getBrokerDealerAccount());
+    }
+
+    private CashObligation cashObligation(ArrayList<CashObligation> obligationsById, int id, Account account) {
+        while (obligationsById.size() <= id) obligationsById.add(null);
+        CashObligation cashObligation = obligationsById.get(id);
+        if (cashObligation == null) {
+            cashObligation = new CashObligation(account);
+            obligationsById.set(id, cashObligation);
+            this.cashObligations.add(cashObligation);
+        }
+        return cashObligation;
+    }
+
+    private SharesObligation customerSharesObligation(Customer customer, int tickerId) {
+        Long key = ((long) customer.getId() << 32) | (tickerId & 0xFFFFFFFFL);
+        SharesObligation sharesObligation = this.customerShares.get(key);
+        if (sharesObligation == null) {
+            sharesObligation = new SharesObligation(customer.getPrimeBroker().getCustomerAccounts().get(customer.getId()),
+                customer.getId(), tickerId);
+            this.customerShares.put(key, sharesObligation);
+            this.sharesObligations.add(sharesObligation);
+        }
+        return sharesObligation;
+    }
+
+    private static class CashObligation {
+        private final Account account;
+        private long netCash;
+
+        private CashObligation(Account account) {
+            this.account = account;
+            this.netCash = 0;
+        }
+
+        private void pay(long cash) {
+            this.netCash -= cash;
+        }
+
+        private void receive(long cash) {
+            this.netCash += cash;
+        }
+
+        private void settle() {
+            LOGGER.debug("Net cash settled: {}", this.netCash);
+            this.account.addCash(this.netCash);
+        }
+    }
+
+    private static class SharesObligation {
+        private final Account account;
+        private final int customerId;
+        private final int tickerId;
+        private int delivered;
+        private int deliveries;
+        private int received;
+        private int receipts;
+
+        private SharesObligation(Account account, int customerId, int tickerId) {
+            this.account = account;
+            this.customerId = customerId;
+            this.tickerId = tickerId;
+        }
+
+        private void deliver(int quantity) {
+            this.delivered += quantity;
+            this.deliveries++;
+        }
+
+        private void receive(int quantity) {
+            this.received += quantity;
+            this.receipts++;
+        }
+
+        private void settle() {
+            if (this.deliveries > 0) this.account.removeShares(sharesTradeDetails(this.delivered));
+            if (this.receipts > 0) this.account.addShares(sharesTradeDetails(this.received));
+        }
+
+        private SharesTradeDetails sharesTradeDetails(int quantity) {
+            return SharesTradeDetails.builder()
+                .customerId(this.customerId)
+                .tickerId(this.tickerId)
+                .quantity(quantity)
+                .build();
+        }
+    }
+}
@@ -4,7 +4,7 @@ import lombok.Value;
 @Builder
 @Value
 public class SharesTradeDetails {
-    private final String customer;
-    private final String ticker;
+    private final int customerId;
+    private final int tickerId;
     private final int quantity;
 }
@@ -0,0 +1,68 @@
+import java.util.EnumMap;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.log4j.Log4j2;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Latency histograms for each stage an order passes through, cheap enough to leave on: every histogram is allocated
+ * up front, recording a latency only reads the clock and increments a counter, and any thread may record. Each
+ * stage is timed from the end of the previous one, so one clock read marks the boundary between two stages.
+ * Latencies above MAX_LATENCY_NANOS are recorded as MAX_LATENCY_NANOS
+ */
+@Log4j2
+public class StageLatencies {
+
+    public enum Stage {
+        PARSE_AND_VALIDATE,
+        RISK_CHECK,
+        JOURNAL,
+        MATCHING,
+        STOP_CASCADE,
+        SETTLEMENT,
+        MISSION_OUTPUT
+    }
+
+    private static final long MAX_LATENCY_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final EnumMap<Stage, Recorder> recorders;
+
+    public StageLatencies() {
+        this.recorders = new EnumMap<Stage, Recorder>(Stage.class);
+        for (Stage stage : Stage.values()) this.recorders.put(stage, new Recorder(MAX_LATENCY_NANOS, SIGNIFICANT_DIGITS));
+    }
+
+    /**
+     * Records the time since startTime against the stage
+     * @param stage
+     * @param startTime: from System.nanoTime
+     * @return the end time, which is the start time of the next stage
+     */
+    public long record(Stage stage, long startTime) {
+        long endTime = System.nanoTime();
+        this.recorders.get(stage).recordValue(Math.min(endTime - startTime, MAX_LATENCY_NANOS));
+        return endTime;
+    }
+
+    /**
+     * Logs the percentiles of every stage recorded since the last summary, then starts a new interval
+     * @param date
+     */
+    public void logSummary(int date) {
+        LOGGER.info("Stage latencies for day {} (microseconds)", date);
+        for (Stage stage : Stage.values()) {
+            Histogram histogram = this.recorders.get(stage).getIntervalHistogram();
+            if (histogram.getTotalCount() == 0) continue;
+            LOGGER.info("{}: count {}, p50 {}, p90 {}, p99 {}, p99.9 {}, max {}",
+                stage, histogram.getTotalCount(),
+                microseconds(histogram.getValueAtPercentile(50)), microseconds(histogram.getValueAtPercentile(90)),
+                microseconds(histogram.getValueAtPercentile(99)), microseconds(histogram.getValueAtPercentile(99.9)),
+                microseconds(histogram.getMaxValue()));
+        }
+    }
+
+    private static String microseconds(long nanoseconds) {
+        return String.format("%.3f", nanoseconds / 1000.0);
+    }
+}
@@ -0,0 +1,62 @@
+import java.util.Collection;
+import java.util.function.Consumer;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Dormant STOP orders for a single ticker, indexed by trigger price. A BUY STOP order is activated once the last
+ * executed price rises above its trigger price, and a SELL STOP order once the last executed price falls below its
+ * trigger price, so each change in last executed price activates a contiguous run of trigger prices at the head of
+ * one of the two indexes. Orders sharing a trigger price are activated in the order in which they arrived
+ */
+@Log4j2
+public class StopOrderList extends TriggerRules {
+
+    private final PriceLevels buyStopOrders;
+    private final PriceLevels sellStopOrders;
+
+    public StopOrderList() {
+        this.buyStopOrders = new PriceLevels();
+        this.sellStopOrders = new PriceLevels();
+    }
+
+    public void addOrderToList(Order newOrder) {
+        PriceLevels stopOrders = this.sellStopOrders;
+        if (newOrder.getDirection() == Direction.BUY) stopOrders = this.buyStopOrders;
+        stopOrders.add(newOrder.getTriggerPrice(), newOrder);
+    }
+
+    public int size() {
+        return this.buyStopOrders.size() + this.sellStopOrders.size();
+    }
+
+    /**
+     * Visits every dormant BUY STOP order and then every dormant SELL STOP order, each in ascending trigger price order
+     * and in order of arrival within a trigger price, so that adding the orders to an empty list in the same order
+     * rebuilds this list
+     * @param action
+     */
+    public void forEachOrder(Consumer<Order> action) {
+        this.buyStopOrders.forEachOrder(action);
+        this.sellStopOrders.forEachOrder(action);
+    }
+
+    public boolean isTriggered(Order order, double lastExecutedPrice) {
+        return stopOrderTriggered(order, lastExecutedPrice);
+    }
+
+    /**
+     * Removes every STOP order activated by the last executed price of the ticker and adds it to activatedOrders, BUY
+     * orders first. Each order is returned at most once, as it no longer rests in this list
+     * @param lastExecutedPrice
+     * @param activatedOrders
+     */
+    public void popActivatedOrders(double lastExecutedPrice, Collection<Order> activatedOrders) {
+        if (!isLastExecutedPriceInitialised(lastExecutedPrice)) return;
+        int activated = activatedOrders.size();
+        this.buyStopOrders.pollBelow(lastExecutedPrice, activatedOrders);
+        this.sellStopOrders.pollAbove(lastExecutedPrice, activatedOrders);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("{} STOP ORDERS activated", Integer.toString(activatedOrders.size() - activated));
+        }
+    }
+}
@@ -9,6 +9,6 @@ import lombok.extern.log4j.Log4j2;
 @Builder
 public class TickerQuantityPair {
     private final Customer customer;
-    private final String ticker;
+    private final int tickerId;
     private final int quantity;
 }
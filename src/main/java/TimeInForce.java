@@ -0,0 +1,4 @@
+public enum TimeInForce {
+    GTC,
+    FOK
+}
@@ -0,0 +1,302 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+import lombok.Builder;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Writes a synthetic, reproducible workload in the formats read by InitialiseEntities and ReadWriteFiles:
+ * ListOfTickers.csv, ListOfBrokerDealers.csv, ListOfCustomers.csv and one ordersN.csv per day, plus empty Missions and
+ * Settlements directories. The same seed always gives the same files.
+ * main expects these under "src/main/resources/Program Arguments" relative to its working directory, so by default
+ * they are generated under target/workload, and a load test runs main from there with -Ddays set to the number of
+ * days generated
+ */
+@Builder
+@Log4j2
+public class WorkloadGenerator {
+
+    private static final String[] INVALID_DIRECTIONS = {"HOLD", "buy", ""};
+    private static final String[] INVALID_TYPES = {"STOP", "LIMITED", ""};
+    private static final String[] INVALID_TIMES_IN_FORCE = {"IOC", "DAY", ""};
+    private static final long INITIAL_PRICE_CENTS = 10000;
+    /** Share of the distance back to the initial price recovered at each step of a MEAN_REVERTING walk */
+    private static final double MEAN_REVERSION = 0.01;
+    /** Drift of each step of a TRENDING walk, as a share of the volatility */
+    private static final double TREND_DRIFT = 0.1;
+    /** Number of the most recent valid rows whose order ids an invalid row may repeat */
+    private static final int RECENT_ORDER_IDS = 100;
+
+    /**
+     * RANDOM_WALK takes Gaussian steps, MEAN_REVERTING is pulled back towards the initial price, and TRENDING drifts up
+     * or down, chosen per ticker by the seed
+     */
+    public enum PriceWalk {
+        RANDOM_WALK,
+        MEAN_REVERTING,
+        TRENDING
+    }
+
+    @Builder.Default private final long seed = 1;
+    @Builder.Default private final int days = 4;
+    @Builder.Default private final int ordersPerDay = 1000;
+    @Builder.Default private final int tickerCount = 2;
+    @Builder.Default private final int brokerDealerCount = 10;
+    @Builder.Default private final int customerCount = 10;
+    @Builder.Default private final PriceWalk priceWalk = PriceWalk.RANDOM_WALK;
+    /** Standard deviation of each step of the price walk, in cents */
+    @Builder.Default private final double volatilityCents = 2.0;
+    /** How far either side of the current price LIMIT prices are spread, in cents */
+    @Builder.Default private final int limitSpreadCents = 50;
+    @Builder.Default private final int maxQuantity = 100;
+    @Builder.Default private final double marketOrderRatio = 0.2;
+    @Builder.Default private final double stopOrderRatio = 0.1;
+    @Builder.Default private final double fillOrKillRatio = 0.1;
+    @Builder.Default private final double invalidRowRate = 0.01;
+    @Builder.Default private final String outputDirectory = "target/workload/src/main/resources/Program Arguments";
+
+    public static void main(String[] args) throws IOException {
+        WorkloadGeneratorBuilder builder = WorkloadGenerator.builder();
+        for (String arg : args) {
+            String[] keyValue = arg.split("=", 2);
+            if (keyValue.length != 2) {
+                LOGGER.error("Expected key=value argument: {}", arg);
+                throw new IllegalArgumentException(arg);
+            }
+            setOption(builder, keyValue[0], keyValue[1]);
+        }
+        builder.build().generate();
+    }
+
+    private static void setOption(WorkloadGeneratorBuilder builder, String key, String value) {
+        if (key.equals("seed")) builder.seed(Long.parseLong(value));
+        else if (key.equals("days")) builder.days(Integer.parseInt(value));
+        else if (key.equals("ordersPerDay")) builder.ordersPerDay(Integer.parseInt(value));
+        else if (key.equals("tickerCount")) builder.tickerCount(Integer.parseInt(value));
+        else if (key.equals("brokerDealerCount")) builder.brokerDealerCount(Integer.parseInt(value));
+        else if (key.equals("customerCount")) builder.customerCount(Integer.parseInt(value));
+        else if (key.equals("priceWalk")) builder.priceWalk(PriceWalk.valueOf(value));
+        else if (key.equals("volatilityCents")) builder.volatilityCents(Double.parseDouble(value));
+        else if (key.equals("limitSpreadCents")) builder.limitSpreadCents(Integer.parseInt(value));
+        else if (key.equals("maxQuantity")) builder.maxQuantity(Integer.parseInt(value));
+        else if (key.equals("marketOrderRatio")) builder.marketOrderRatio(Double.parseDouble(value));
+        else if (key.equals("stopOrderRatio")) builder.stopOrderRatio(Double.parseDouble(value));
+        else if (key.equals("fillOrKillRatio")) builder.fillOrKillRatio(Double.parseDouble(value));
+        else if (key.equals("invalidRowRate")) builder.invalidRowRate(Double.parseDouble(value));
+        else if (key.equals("outputDirectory")) builder.outputDirectory(value);
+        else {
+            LOGGER.error("Unrecognised option: {}", key);
+            throw new IllegalArgumentException(key);
+        }
+    }
+
+    /**
+     * @return the number of order rows written with a field which ReadWriteFiles rejects
+     * @throws IOException
+     */
+    public long generate() throws IOException {
+        LOGGER.info("Generating {} days of {} orders in: {}", this.days, this.ordersPerDay, this.outputDirectory);
+        new File(this.outputDirectory, "Orders").mkdirs();
+        new File(this.outputDirectory, "Missions").mkdirs();
+        new File(this.outputDirectory, "Settlements").mkdirs();
+
+        Random random = new Random(this.seed);
+        writeTickers();
+        writeBrokerDealers();
+        writeCustomers(random);
+
+        long[] priceCents = new long[this.tickerCount];
+        for (int i = 0; i < this.tickerCount; i++) priceCents[i] = INITIAL_PRICE_CENTS;
+        long[] trends = new long[this.tickerCount];
+        for (int i = 0; i < this.tickerCount; i++) trends[i] = random.nextInt(3) - 1;
+        int orderId = 1;
+        WrittenOrders writtenOrders = new WrittenOrders();
+        for (int day = 1; day <= this.days; day++) {
+            orderId = writeOrders(day, orderId, priceCents, trends, writtenOrders, random);
+        }
+        return writtenOrders.invalidRows;
+    }
+
+    /**
+     * Counts the rows written as invalid, and keeps the order ids of the most recent rows written as valid, which
+     * ReadWriteFiles has recorded by the time it reads a later row, so that an invalid row repeating one of them is
+     * always rejected as a duplicate
+     */
+    private static class WrittenOrders {
+        private final int[] orderIds = new int[RECENT_ORDER_IDS];
+        private long validRows = 0;
+        private long invalidRows = 0;
+
+        private void addValid(int orderId) {
+            this.orderIds[(int) (this.validRows % RECENT_ORDER_IDS)] = orderId;
+            this.validRows++;
+        }
+
+        private boolean isEmpty() {
+            return this.validRows == 0;
+        }
+
+        private int pick(Random random) {
+            return this.orderIds[random.nextInt((int) Math.min(this.validRows, RECENT_ORDER_IDS))];
+        }
+    }
+
+    private static String tickerName(int tickerId) {
+        return "TICKER" + (tickerId + 1);
+    }
+
+    private static String brokerDealerName(int brokerDealerId) {
+        return "BROKER" + (brokerDealerId + 1);
+    }
+
+    private static String customerName(int customerId) {
+        return "CLIENT" + (customerId + 1);
+    }
+
+    private BufferedWriter openWriter(String fileName, String header) throws IOException {
+        File file = new File(this.outputDirectory, fileName);
+        LOGGER.debug("Opening FileWriter for: {}", file);
+        BufferedWriter writer = new BufferedWriter(new FileWriter(file), 1 << 16);
+        writer.append(header);
+        writer.append('\n');
+        return writer;
+    }
+
+    private void writeTickers() throws IOException {
+        BufferedWriter writer = openWriter("ListOfTickers.csv", "TICKERS");
+        for (int i = 0; i < this.tickerCount; i++) {
+            writer.append(tickerName(i));
+            writer.append('\n');
+        }
+        writer.close();
+    }
+
+    private String initialStock() {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < this.tickerCount; i++) {
+            if (i > 0) stringBuilder.append(' ');
+            stringBuilder.append(tickerName(i)).append(':').append(1000 * this.maxQuantity);
+        }
+        return stringBuilder.toString();
+    }
+
+    private void writeBrokerDealers() throws IOException {
+        BufferedWriter writer = openWriter("ListOfBrokerDealers.csv", "BROKER DEALERS,INITIAL CASH,INITIAL STOCK");
+        String initialStock = initialStock();
+        for (int i = 0; i < this.brokerDealerCount; i++) {
+            writer.append(brokerDealerName(i)).append(",1000000,").append(initialStock);
+            writer.append('\n');
+        }
+        writer.close();
+    }
+
+    private void writeCustomers(Random random) throws IOException {
+        BufferedWriter writer = openWriter("ListOfCustomers.csv",
+            "CUSTOMER NAME,EXECUTING BROKER,PRIME BROKER,INITIAL CASH,INITIAL STOCK");
+        String initialStock = initialStock();
+        for (int i = 0; i < this.customerCount; i++) {
+            writer.append(customerName(i)).append(',')
+                .append(brokerDealerName(random.nextInt(this.brokerDealerCount))).append(',')
+                .append(brokerDealerName(random.nextInt(this.brokerDealerCount))).append(",1000000,")
+                .append(initialStock);
+            writer.append('\n');
+        }
+        writer.close();
+    }
+
+    private int writeOrders(int day, int firstOrderId, long[] priceCents, long[] trends,
+        WrittenOrders writtenOrders, Random random) throws IOException {
+        BufferedWriter writer = openWriter("Orders/orders" + day + ".csv",
+            "ORDER ID,CUSTOMER NAME,DIRECTION,QUANTITY,TICKER,TYPE,LIMIT PRICE,TIME IN FORCE,TRIGGER PRICE");
+        StringBuilder row = new StringBuilder();
+        int orderId = firstOrderId;
+        for (int i = 0; i < this.ordersPerDay; i++) {
+            int tickerId = random.nextInt(this.tickerCount);
+            priceCents[tickerId] = nextPrice(priceCents[tickerId], trends[tickerId], random);
+            row.setLength(0);
+            if (random.nextDouble() < this.invalidRowRate) {
+                invalidOrderRow(row, orderId, tickerId, writtenOrders, random);
+                writtenOrders.invalidRows++;
+            } else {
+                orderRow(row, orderId, tickerId, priceCents[tickerId], random);
+                writtenOrders.addValid(orderId);
+            }
+            writer.append(row);
+            writer.append('\n');
+            orderId++;
+        }
+        writer.close();
+        LOGGER.info("Generated orders for day {}", day);
+        return orderId;
+    }
+
+    private long nextPrice(long priceCents, long trends, Random random) {
+        double step = random.nextGaussian() * this.volatilityCents;
+        if (this.priceWalk == PriceWalk.MEAN_REVERTING) {
+            step += (INITIAL_PRICE_CENTS - priceCents) * MEAN_REVERSION;
+        } else if (this.priceWalk == PriceWalk.TRENDING) {
+            step += trends * this.volatilityCents * TREND_DRIFT;
+        }
+        long nextPriceCents = priceCents + Math.round(step);
+        if (nextPriceCents < 1) return 1;
+        return nextPriceCents;
+    }
+
+    private void orderRow(StringBuilder row, int orderId, int tickerId, long priceCents, Random random) {
+        String direction = "SELL";
+        if (random.nextBoolean()) direction = "BUY";
+        String timeInForce = "GTC";
+        if (random.nextDouble() < this.fillOrKillRatio) timeInForce = "FOK";
+        boolean stopOrder = random.nextDouble() < this.stopOrderRatio;
+        boolean marketOrder = random.nextDouble() < this.marketOrderRatio;
+
+        long limitPriceCents = Math.max(1, priceCents + random.nextInt(2 * this.limitSpreadCents + 1)
+            - this.limitSpreadCents);
+        long triggerPriceCents = Math.max(1, priceCents + random.nextInt(2 * this.limitSpreadCents + 1)
+            - this.limitSpreadCents);
+
+        row.append(orderId).append(',')
+            .append(customerName(random.nextInt(this.customerCount))).append(',')
+            .append(direction).append(',')
+            .append(1 + random.nextInt(this.maxQuantity)).append(',')
+            .append(tickerName(tickerId)).append(',');
+        if (stopOrder) row.append("STOP-");
+        if (marketOrder) row.append("MARKET,NULL,");
+        else appendCents(row.append("LIMIT,"), limitPriceCents).append(',');
+        row.append(timeInForce).append(',');
+        if (stopOrder) appendCents(row, triggerPriceCents);
+        else row.append("NULL");
+    }
+
+    /**
+     * A valid order with one field replaced by a value which ReadWriteFiles rejects. An invalid order id repeats the id
+     * of a recent valid row, or is not a number if no row has been written as valid yet
+     */
+    private void invalidOrderRow(StringBuilder row, int orderId, int tickerId, WrittenOrders writtenOrders,
+        Random random) {
+        orderRow(row, orderId, tickerId, INITIAL_PRICE_CENTS, random);
+        String[] fields = row.toString().split(",", -1);
+        int invalidField = random.nextInt(9);
+        if (invalidField == 0 && writtenOrders.isEmpty()) fields[0] = "ID" + fields[0];
+        else if (invalidField == 0) fields[0] = Integer.toString(writtenOrders.pick(random));
+        else if (invalidField == 1) fields[1] = "UNKNOWN" + fields[1];
+        else if (invalidField == 2) fields[2] = INVALID_DIRECTIONS[random.nextInt(INVALID_DIRECTIONS.length)];
+        else if (invalidField == 3) fields[3] = Integer.toString(-random.nextInt(this.maxQuantity));
+        else if (invalidField == 4) fields[4] = "UNKNOWN" + fields[4];
+        else if (invalidField == 5) fields[5] = INVALID_TYPES[random.nextInt(INVALID_TYPES.length)];
+        else if (invalidField == 6) fields[6] = "-" + fields[6].replace("NULL", "1.00");
+        else if (invalidField == 7) fields[7] = INVALID_TIMES_IN_FORCE[random.nextInt(INVALID_TIMES_IN_FORCE.length)];
+        else fields[8] = fields[8] + ",EXTRA";
+        row.setLength(0);
+        row.append(String.join(",", fields));
+    }
+
+    private static StringBuilder appendCents(StringBuilder row, long cents) {
+        row.append(cents / 100).append('.');
+        long remainder = cents % 100;
+        if (remainder < 10) row.append('0');
+        return row.append(remainder);
+    }
+}
@@ -1,7 +1,10 @@
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import lombok.extern.log4j.Log4j2;
 
 
@@ -10,37 +13,153 @@ public class main {
 
     public static void main(String[] args) throws IOException {
         LOGGER.info("Initialising participating entities");
-        HashMap<String, BrokerDealer> brokerDealersHashMap = InitialiseEntities.addBrokerDealers();
-        HashMap<String, Customer> customerHashMap = InitialiseEntities.addCustomers(brokerDealersHashMap);
-        HashSet<String> tickerSet = InitialiseEntities.addTickers();
+        ReferenceData referenceData = InitialiseEntities.loadReferenceData();
         HashSet<Integer> orderIdSet = new HashSet<>();
         Exchange exchange = new Exchange();
+        exchange.addTickers(referenceData);
 
+        // -DmatchingThreads=N matches orders on N threads, with the tickers shared out between them
+        int matchingThreads = Integer.getInteger("matchingThreads", 1);
+        PartitionedExchange partitionedExchange = null;
+        if (matchingThreads > 1) {
+            LOGGER.info("Matching orders on {} threads", matchingThreads);
+            partitionedExchange = new PartitionedExchange(exchange, matchingThreads);
+        }
+
+        // -DparsingThreads=N parses and checks the orders files on N threads, while they are matched in file order
+        int parsingThreads = Integer.getInteger("parsingThreads", 1);
+        OrderParsingPipeline orderParsingPipeline = null;
+        if (parsingThreads > 1) {
+            LOGGER.info("Parsing orders on {} threads", parsingThreads);
+            orderParsingPipeline = new OrderParsingPipeline(referenceData, exchange.getStageLatencies(), parsingThreads);
+        }
+
+        // -DsettlementThreads=N settles the missions due each day on N threads, with the broker dealers' accounts shared
+        // out between them
+        int settlementThreads = Integer.getInteger("settlementThreads", 1);
+        PartitionedSettlement partitionedSettlement = null;
+        if (settlementThreads > 1) {
+            LOGGER.info("Settling missions on {} threads", settlementThreads);
+            partitionedSettlement = new PartitionedSettlement(settlementThreads);
+        }
+
+        // -DmetricsPort=N serves the exchange metrics at http://localhost:N/actuator/metrics while the engine runs
+        Integer metricsPort = Integer.getInteger("metricsPort");
+        MetricsServer metricsServer = null;
+        if (metricsPort != null) metricsServer = MetricsServer.start(metricsPort, exchange.getMetrics());
+
+        // -Dsnapshot=path writes a snapshot of the exchange at the end of every day. With -DrestoreSnapshot=true the
+        // exchange is first restored from the snapshot, and the simulation carries on from the day after it was taken
+        String snapshotPath = System.getProperty("snapshot");
+        ArrayList<Agreement> restoredMissions = null;
+        if (snapshotPath != null && Boolean.getBoolean("restoreSnapshot")) {
+            ExchangeSnapshot snapshot = ExchangeSnapshot.readFrom(Paths.get(snapshotPath), referenceData);
+            snapshot.restoreTo(exchange, referenceData, orderIdSet);
+            restoredMissions = snapshot.getPendingMissions();
+        }
+        ExecutorService snapshotWriter = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // -DorderJournal=path journals every accepted order before it is matched, forcing it to disk as set by
+        // -DjournalSync=NONE|BATCH|EVERY_ORDER and -DjournalBatchSize=N. With -DreplayJournal=true the OrderBooks are
+        // rebuilt from the orders journaled since the snapshot was taken, and the simulation carries on with that day.
+        // Replaying does not settle missions, so it needs the Accounts restored from the snapshot
+        String orderJournalPath = System.getProperty("orderJournal");
+        if (Boolean.getBoolean("replayJournal") && restoredMissions == null) {
+            LOGGER.error("-DreplayJournal=true needs -Dsnapshot and -DrestoreSnapshot=true");
+            throw new IllegalArgumentException();
+        }
+        OrderJournal orderJournal = null;
+        ArrayList<Agreement> replayedAgreements = new ArrayList<Agreement>();
+        HashSet<Integer> replayedOrderIds = null;
+        if (orderJournalPath != null) {
+            OrderJournal.SyncPolicy syncPolicy =
+                OrderJournal.SyncPolicy.valueOf(System.getProperty("journalSync", "BATCH"));
+            orderJournal = new OrderJournal(Paths.get(orderJournalPath), syncPolicy,
+                Integer.getInteger("journalBatchSize", 1000));
+            if (Boolean.getBoolean("replayJournal")) {
+                replayedOrderIds = orderJournal.replay(referenceData, exchange, orderIdSet, replayedAgreements::add);
+                // Agreements from earlier days are already in their missions files
+                replayedAgreements.removeIf(agreement -> agreement.getDateOfAgreement() != exchange.getDate());
+            }
+        }
+
+        // -DatomicOutput=true writes each missions, settlements and rejects file to a temporary file, then moves it
+        // into place, so that a crash never leaves a half written file behind
         ReadWriteFiles readWriteFiles = ReadWriteFiles.builder()
-            .brokerDealerHashMap(brokerDealersHashMap)
-            .customerHashMap(customerHashMap)
-            .tickerSet(tickerSet)
+            .referenceData(referenceData)
             .orderIdSet(orderIdSet)
             .exchange(exchange)
+            .partitionedExchange(partitionedExchange)
+            .orderJournal(orderJournal)
+            .orderParsingPipeline(orderParsingPipeline)
+            .partitionedSettlement(partitionedSettlement)
+            .rejectsFileName("src/main/resources/Program Arguments/Rejects/rejects")
+            .atomicOutput(Boolean.getBoolean("atomicOutput"))
+            .replayedOrderIds(replayedOrderIds)
             .build();
 
+        // -DsettlementCycle=N settles each agreement N days after it is made, T+2 by default
+        MissionStore missionStore =
+            new MissionStore(Integer.getInteger("settlementCycle", MissionStore.DEFAULT_SETTLEMENT_CYCLE));
+        boolean missionsLoaded = false;
+
         String ordersFileName = "src/main/resources/Program Arguments/Orders/orders";
-        for (int i = 1; i <= 4; i++ ) { //Simulates the change of days
+        int days = Integer.getInteger("days", 4);
+        for (int i = exchange.getDate(); i <= days; i++ ) { //Simulates the change of days
             LOGGER.info("Start of market day");
-            ArrayList<Agreement> agreementArrayList = readWriteFiles.readOrdersFile(ordersFileName);
+            ArrayList<Agreement> agreementArrayList = new ArrayList<Agreement>(replayedAgreements);
+            replayedAgreements.clear();
+            agreementArrayList.addAll(readWriteFiles.readOrdersFile(ordersFileName));
             LOGGER.info("Agreements completed for the day");
-            ArrayList<Agreement> missionsArrayList = readWriteFiles.readMissionsFile();
-            ArrayList<Agreement> remainingMissionsArrayList = readWriteFiles.settleAgreements(missionsArrayList);
+            if (missionsLoaded == false) {
+                // Only the first day reads the missions file, or takes the missions restored from a snapshot; later
+                // days carry the pending missions over in the store
+                if (restoredMissions == null) restoredMissions = readWriteFiles.readMissionsFile();
+                missionStore.addAll(restoredMissions);
+                missionsLoaded = true;
+            }
+            readWriteFiles.settleMissions(missionStore);
             LOGGER.info("Settlements completed for the day");
-            remainingMissionsArrayList.addAll(agreementArrayList);
-            readWriteFiles.writeMissionsToFile(remainingMissionsArrayList);
+            missionStore.addAll(agreementArrayList);
+            readWriteFiles.writeMissionsToFile(missionStore);
             LOGGER.info("Missions completed for the day");
+            exchange.getStageLatencies().logSummary(exchange.getDate());
             LOGGER.info("End of market day");
             exchange.incrementDate();
+            if (snapshotPath != null) {
+                // Only capturing has to wait for the exchange; the file is written while the next day is matched
+                ExchangeSnapshot snapshot = ExchangeSnapshot.capture(exchange, referenceData, orderIdSet,
+                    missionStore.toList());
+                snapshotWriter.execute(() -> writeSnapshot(snapshot, snapshotPath));
+            }
         }
 
+        if (partitionedExchange != null) partitionedExchange.shutdown();
+        if (orderParsingPipeline != null) orderParsingPipeline.shutdown();
+        if (partitionedSettlement != null) partitionedSettlement.shutdown();
+        if (orderJournal != null) orderJournal.close();
+        if (metricsServer != null) metricsServer.shutdown();
+        snapshotWriter.shutdown();
+        try {
+            snapshotWriter.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
         LOGGER.info("End of simulation");
     }
 
+    private static void writeSnapshot(ExchangeSnapshot snapshot, String snapshotPath) {
+        try {
+            snapshot.writeTo(Paths.get(snapshotPath));
+        } catch (IOException e) {
+            e.printStackTrace();
+            LOGGER.error("Snapshot not written: {}", snapshotPath);
+        }
+    }
+
 }
 
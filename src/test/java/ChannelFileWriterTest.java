@@ -0,0 +1,55 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import lombok.extern.log4j.Log4j2;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+@Log4j2
+public class ChannelFileWriterTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testSameBytesAsFileWriter() throws IOException {
+        /*
+        Test to assert that the ChannelFileWriter writes the same bytes as a FileWriter given the same appends,
+        including text which is not ASCII, when its buffer is much smaller than the file and so is written out many
+        times. An atomic writer reused for a second, shorter file replaces the first without leaving a temporary file
+        behind
+         */
+        //Given
+        Path expectedPath = temporaryFolder.newFile().toPath();
+        Path path = temporaryFolder.getRoot().toPath().resolve("missions1.csv");
+        String[] records = {"CLIENT1,CLIENT2,IBM,100,102.93,1", "CLIENT\u00C9,CLIENT\u20AC,GOOG,5,0.1,2", "", "x"};
+        FileWriter fileWriter = new FileWriter(expectedPath.toFile());
+        ChannelFileWriter channelFileWriter = new ChannelFileWriter(7, true);
+
+        //When
+        channelFileWriter.open(path);
+        for (int i = 0; i < 100; i++) {
+            for (String record : records) {
+                fileWriter.append(record);
+                fileWriter.append('\n');
+                channelFileWriter.append(record);
+                channelFileWriter.append('\n');
+            }
+        }
+        fileWriter.close();
+        channelFileWriter.close();
+        byte[] firstFile = Files.readAllBytes(path);
+
+        channelFileWriter.open(path);
+        channelFileWriter.append(records[0]);
+        channelFileWriter.close();
+
+        //Then
+        Assert.assertArrayEquals(Files.readAllBytes(expectedPath), firstFile);
+        Assert.assertEquals(records[0], new String(Files.readAllBytes(path)));
+        Assert.assertFalse(Files.exists(path.resolveSibling("missions1.csv.tmp")));
+    }
+}
@@ -0,0 +1,53 @@
+import java.text.DecimalFormat;
+import java.util.Random;
+import lombok.extern.log4j.Log4j2;
+import org.junit.Assert;
+import org.junit.Test;
+
+@Log4j2
+public class DecimalEncoderTest {
+
+    private static void assertSameAsJdk(double value, DecimalFormat centsFormat, StringBuilder builder) {
+        builder.setLength(0);
+        DecimalEncoder.appendDouble(builder, value);
+        Assert.assertEquals(Double.toString(value), builder.toString());
+        builder.setLength(0);
+        DecimalEncoder.appendCents(builder, value);
+        Assert.assertEquals(centsFormat.format(value), builder.toString());
+    }
+
+    @Test
+    public void testSameCharactersAsJdkFormats() {
+        /*
+        Test to assert that the DecimalEncoder appends the same characters as Double.toString and a DecimalFormat of
+        "#.00" for every price in cents up to 2000.00, the fees of 10% and 5% on them and what a seller receives once
+        both are taken, random values of every size, values exactly half way between two cents, and values either
+        formatter writes specially
+         */
+        //Given
+        DecimalFormat centsFormat = new DecimalFormat("#.00");
+        StringBuilder builder = new StringBuilder();
+        Random random = new Random(25);
+        double[] specialValues = {0.0, -0.0, -1e-9, 0.005, 0.015, 0.125, 1.005, 2.675, 0.995, 1e-3, 9999999.99, 1e7,
+            4.5e13, 1e15, 1e300, Double.MIN_VALUE, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+
+        //When
+        //Then
+        for (long cents = 0; cents <= 200000; cents++) {
+            double price = cents / 100.0;
+            double primeBrokerFee = 0.10 * price;
+            double executingBrokerFee = 0.05 * price;
+            assertSameAsJdk(price, centsFormat, builder);
+            assertSameAsJdk(primeBrokerFee, centsFormat, builder);
+            assertSameAsJdk(executingBrokerFee, centsFormat, builder);
+            assertSameAsJdk(price - (primeBrokerFee + executingBrokerFee), centsFormat, builder);
+        }
+        for (int i = 0; i < 200000; i++) {
+            double value = (random.nextDouble() - 0.1) * Math.pow(10, random.nextInt(20) - 5);
+            assertSameAsJdk(value, centsFormat, builder);
+            assertSameAsJdk((Math.floor(value * 1000) + 0.5) / 1000, centsFormat, builder);
+            assertSameAsJdk(Math.floor(value * 200) / 200, centsFormat, builder);
+        }
+        for (double value : specialValues) assertSameAsJdk(value, centsFormat, builder);
+    }
+}
@@ -0,0 +1,199 @@
+import java.lang.management.ManagementFactory;
+import lombok.extern.log4j.Log4j2;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.junit.Assert;
+import org.junit.Test;
+
+@Log4j2
+public class ExchangeAllocationTest {
+
+    private static final int WARM_UP_ITERATIONS = 200000;
+    private static final int MEASURED_ITERATIONS = 500000;
+    /** Size of an Agreement on a 64-bit JVM without compressed object pointers, an upper bound with them */
+    private static final long AGREEMENT_BYTES = 64;
+    /** Allowance for anything the JVM allocates on the thread while it is measured, such as a recompilation */
+    private static final long MEASUREMENT_SLACK_BYTES = 64 * 1024;
+    private static final AgreementSink NO_AGREEMENTS_EXPECTED =
+        agreement -> Assert.fail("Unexpected trade: " + agreement);
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threadMXBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static Order restingOrder(int orderId, int tickerId, Direction direction, double limitPrice) {
+        return Order.builder()
+            .orderId(orderId)
+            .direction(direction)
+            .quantity(100)
+            .tickerId(tickerId)
+            .type(OrderType.LIMIT)
+            .limitPrice(limitPrice)
+            .timeInForce(TimeInForce.GTC)
+            .triggerPrice(Order.NO_PRICE)
+            .build();
+    }
+
+    private static Order stopOrder(int orderId, int tickerId, Direction direction, double triggerPrice) {
+        return Order.builder()
+            .orderId(orderId)
+            .direction(direction)
+            .quantity(100)
+            .tickerId(tickerId)
+            .type(OrderType.MARKET)
+            .limitPrice(Order.NO_PRICE)
+            .timeInForce(TimeInForce.GTC)
+            .triggerPrice(triggerPrice)
+            .build();
+    }
+
+    private static Order fillOrKillOrder(int orderId, int tickerId, Direction direction, OrderType type,
+        double limitPrice) {
+        return Order.builder()
+            .orderId(orderId)
+            .direction(direction)
+            .quantity(100)
+            .tickerId(tickerId)
+            .type(type)
+            .limitPrice(limitPrice)
+            .timeInForce(TimeInForce.FOK)
+            .triggerPrice(Order.NO_PRICE)
+            .build();
+    }
+
+    @Test
+    public void testNoAllocationWhenOrdersDoNotTrade() {
+        /*
+        Test to assert that, once warmed up, looking up an order in a deep order book allocates nothing when the order
+        does not trade. FOK orders are used so that the book is left unchanged by every iteration:
+        a BUY LIMIT order below the best SELL price, a SELL LIMIT order above the best BUY price, and a BUY MARKET order
+        for a ticker with no SELL orders
+         */
+        //Given
+        Level rootLevel = LogManager.getRootLogger().getLevel();
+        Configurator.setRootLevel(Level.OFF);
+        try {
+            Exchange exchange = new Exchange();
+            int ibm = exchange.getTickerId("IBM");
+            int goog = exchange.getTickerId("GOOG");
+            int orderId = 1;
+            for (int level = 0; level < 1000; level++) {
+                for (int i = 0; i < 10; i++) {
+                    exchange.findMatchingOrder(restingOrder(orderId++, ibm, Direction.BUY, 100.00 - level * 0.01),
+                        NO_AGREEMENTS_EXPECTED);
+                    exchange.findMatchingOrder(restingOrder(orderId++, ibm, Direction.SELL, 101.00 + level * 0.01),
+                        NO_AGREEMENTS_EXPECTED);
+                }
+            }
+            Order[] orders = {
+                fillOrKillOrder(orderId++, ibm, Direction.BUY, OrderType.LIMIT, 100.50),
+                fillOrKillOrder(orderId++, ibm, Direction.SELL, OrderType.LIMIT, 100.50),
+                fillOrKillOrder(orderId, goog, Direction.BUY, OrderType.MARKET, Order.NO_PRICE)
+            };
+            for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+                for (Order order : orders) exchange.findMatchingOrder(order, NO_AGREEMENTS_EXPECTED);
+            }
+
+            //When
+            long allocatedBefore = allocatedBytes();
+            for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+                for (Order order : orders) exchange.findMatchingOrder(order, NO_AGREEMENTS_EXPECTED);
+            }
+            long allocatedAfter = allocatedBytes();
+
+            //Then
+            Assert.assertTrue("Allocated " + (allocatedAfter - allocatedBefore) + " bytes",
+                allocatedAfter - allocatedBefore <= MEASUREMENT_SLACK_BYTES);
+        } finally {
+            Configurator.setRootLevel(rootLevel);
+        }
+    }
+
+    @Test
+    public void testOnlyAgreementsAllocatedWhenOrdersTrade() {
+        /*
+        Test to assert that, once warmed up, matching orders which trade against a deep order book, replenishing the
+        resting orders they take and firing STOP orders allocates nothing but the Agreements made. Each iteration
+        rests a BUY STOP order triggered above 100.50, then a BUY LIMIT order at 101.00 trades with the oldest SELL
+        order at 101.00, which fires the BUY STOP order to trade with the next one, and both SELL orders are put back.
+        The same is then done on the other side of the book with a SELL STOP order and a SELL LIMIT order at 100.00,
+        so the last executed price swings between 100.00 and 101.00 and the book is left as it was found
+         */
+        //Given
+        Level rootLevel = LogManager.getRootLogger().getLevel();
+        Configurator.setRootLevel(Level.OFF);
+        try {
+            Exchange exchange = new Exchange();
+            int ibm = exchange.getTickerId("IBM");
+            int orderId = 1;
+            for (int level = 1; level < 1000; level++) {
+                for (int i = 0; i < 10; i++) {
+                    exchange.findMatchingOrder(restingOrder(orderId++, ibm, Direction.BUY, 100.00 - level * 0.01),
+                        NO_AGREEMENTS_EXPECTED);
+                    exchange.findMatchingOrder(restingOrder(orderId++, ibm, Direction.SELL, 101.00 + level * 0.01),
+                        NO_AGREEMENTS_EXPECTED);
+                }
+            }
+            Order[] bestBuyOrders = new Order[10];
+            Order[] bestSellOrders = new Order[10];
+            for (int i = 0; i < 10; i++) {
+                bestBuyOrders[i] = restingOrder(orderId++, ibm, Direction.BUY, 100.00);
+                bestSellOrders[i] = restingOrder(orderId++, ibm, Direction.SELL, 101.00);
+                exchange.findMatchingOrder(bestBuyOrders[i], NO_AGREEMENTS_EXPECTED);
+                exchange.findMatchingOrder(bestSellOrders[i], NO_AGREEMENTS_EXPECTED);
+            }
+            Order buyOrder = restingOrder(orderId++, ibm, Direction.BUY, 101.00);
+            Order sellOrder = restingOrder(orderId++, ibm, Direction.SELL, 100.00);
+            Order buyStopOrder = stopOrder(orderId++, ibm, Direction.BUY, 100.50);
+            Order sellStopOrder = stopOrder(orderId, ibm, Direction.SELL, 100.50);
+            long[] agreementsMade = new long[1];
+            AgreementSink agreementSink = agreement -> agreementsMade[0]++;
+            int next = 0;
+            for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+                next = tradeBothSides(exchange, buyOrder, sellOrder, buyStopOrder, sellStopOrder, bestBuyOrders,
+                    bestSellOrders, next, agreementSink);
+            }
+
+            //When
+            agreementsMade[0] = 0;
+            long allocatedBefore = allocatedBytes();
+            for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+                next = tradeBothSides(exchange, buyOrder, sellOrder, buyStopOrder, sellStopOrder, bestBuyOrders,
+                    bestSellOrders, next, agreementSink);
+            }
+            long allocatedAfter = allocatedBytes();
+
+            //Then
+            Assert.assertEquals(4L * MEASURED_ITERATIONS, agreementsMade[0]);
+            Assert.assertEquals(10000, exchange.getOrderBook(ibm).getSellLimitOrders().size());
+            Assert.assertEquals(10000, exchange.getOrderBook(ibm).getBuyLimitOrders().size());
+            Assert.assertTrue("Allocated " + (allocatedAfter - allocatedBefore) + " bytes for " + agreementsMade[0]
+                + " Agreements", allocatedAfter - allocatedBefore
+                <= agreementsMade[0] * AGREEMENT_BYTES + MEASUREMENT_SLACK_BYTES);
+        } finally {
+            Configurator.setRootLevel(rootLevel);
+        }
+    }
+
+    /**
+     * Trades both sides of the book once, as described by testOnlyAgreementsAllocatedWhenOrdersTrade
+     * @return the index of the oldest of the best resting orders on each side after the trades
+     */
+    private static int tradeBothSides(Exchange exchange, Order buyOrder, Order sellOrder, Order buyStopOrder,
+        Order sellStopOrder, Order[] bestBuyOrders, Order[] bestSellOrders, int next, AgreementSink agreementSink) {
+        int following = (next + 1) % bestSellOrders.length;
+        exchange.findMatchingOrder(buyStopOrder, agreementSink);
+        exchange.findMatchingOrder(buyOrder, agreementSink);
+        exchange.findMatchingOrder(bestSellOrders[next], NO_AGREEMENTS_EXPECTED);
+        exchange.findMatchingOrder(bestSellOrders[following], NO_AGREEMENTS_EXPECTED);
+        exchange.findMatchingOrder(sellStopOrder, agreementSink);
+        exchange.findMatchingOrder(sellOrder, agreementSink);
+        exchange.findMatchingOrder(bestBuyOrders[next], NO_AGREEMENTS_EXPECTED);
+        exchange.findMatchingOrder(bestBuyOrders[following], NO_AGREEMENTS_EXPECTED);
+        return (following + 1) % bestSellOrders.length;
+    }
+
+}
@@ -0,0 +1,81 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import lombok.extern.log4j.Log4j2;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+@Log4j2
+public class ExchangeSnapshotTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static ArrayList<String> toStrings(ArrayList<Agreement> agreements) {
+        ArrayList<String> strings = new ArrayList<String>();
+        for (Agreement agreement : agreements) strings.add(agreement.toString());
+        return strings;
+    }
+
+    @Test
+    public void testRestoreRebuildsExchange() throws IOException {
+        /*
+        Test to assert that restoring a snapshot taken after testStopOrderCascade, into a new Exchange with newly loaded
+        reference data, restores the date, the order ids, the pending missions and the Accounts, and leaves the same
+        resting and STOP orders behind, so that the same further orders make the same Agreements on both exchanges: the
+        trade at 98.00 activates the SELL STOP order of CLIENT7, which is then matched by orderId 10
+         */
+        //Given
+        Path snapshotPath = temporaryFolder.getRoot().toPath().resolve("exchange.snapshot");
+        ReferenceData referenceData = InitialiseEntities.loadReferenceData();
+        Exchange exchange = new Exchange();
+        exchange.addTickers(referenceData);
+        HashSet<Integer> orderIdSet = new HashSet<>();
+        ReadWriteFiles readWriteFiles = ReadWriteFiles.builder()
+            .referenceData(referenceData)
+            .orderIdSet(orderIdSet)
+            .exchange(exchange)
+            .build();
+        ArrayList<Agreement> agreements = readWriteFiles.readOrdersFile(
+            "src/test/resources/Program Arguments/Orders/testStopOrderCascade");
+        exchange.incrementDate();
+        referenceData.getCustomer("CLIENT3").getPrimeBroker().getCustomerAccounts()
+            .get(referenceData.getCustomer("CLIENT3").getId()).addCash(Account.toMinorUnits(-1234.5));
+        ExchangeSnapshot.capture(exchange, referenceData, orderIdSet, agreements).writeTo(snapshotPath);
+
+        ReferenceData restoredReferenceData = InitialiseEntities.loadReferenceData();
+        Exchange restoredExchange = new Exchange();
+        restoredExchange.addTickers(restoredReferenceData);
+        HashSet<Integer> restoredOrderIdSet = new HashSet<>();
+
+        //When
+        ExchangeSnapshot snapshot = ExchangeSnapshot.readFrom(snapshotPath, restoredReferenceData);
+        snapshot.restoreTo(restoredExchange, restoredReferenceData, restoredOrderIdSet);
+
+        ArrayList<Agreement> furtherAgreements = new ArrayList<Agreement>();
+        ArrayList<Agreement> restoredFurtherAgreements = new ArrayList<Agreement>();
+        String[] furtherOrders = {"8,CLIENT8,BUY,100,IBM,LIMIT,98.00,GTC,NULL",
+            "9,CLIENT9,SELL,100,IBM,LIMIT,98.00,GTC,NULL",
+            "10,CLIENT1,BUY,100,IBM,LIMIT,97.00,GTC,NULL"};
+        for (String furtherOrder : furtherOrders) {
+            readWriteFiles.orderToExchange(furtherOrder, furtherAgreements::add);
+            ReadWriteFiles.builder().referenceData(restoredReferenceData).orderIdSet(restoredOrderIdSet)
+                .exchange(restoredExchange).build()
+                .orderToExchange(furtherOrder, restoredFurtherAgreements::add);
+        }
+
+        //Then
+        Assert.assertEquals(2, restoredExchange.getDate());
+        Assert.assertEquals(toStrings(agreements), toStrings(snapshot.getPendingMissions()));
+        Assert.assertEquals(toStrings(furtherAgreements), toStrings(restoredFurtherAgreements));
+        Assert.assertEquals("CLIENT1,CLIENT7,IBM,100,97.0,2", restoredFurtherAgreements.get(1).toString());
+        Assert.assertEquals(orderIdSet, restoredOrderIdSet);
+        Assert.assertEquals(Account.toMinorUnits(1000000 - 1234.5), restoredReferenceData.getCustomer("CLIENT3").getPrimeBroker()
+            .getCustomerCash(CashCheck.builder().customer(restoredReferenceData.getCustomer("CLIENT3")).build()));
+        Assert.assertEquals(exchange.getLastExecutedPrices().getLastExecutedPrice(0),
+            restoredExchange.getLastExecutedPrices().getLastExecutedPrice(0), 0.0);
+    }
+}
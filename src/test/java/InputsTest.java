@@ -1,5 +1,4 @@
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import lombok.extern.log4j.Log4j2;
 import org.junit.Assert;
@@ -11,16 +10,13 @@ public class InputsTest {
 
     public ReadWriteFiles testInputsSetup(){
         LOGGER.info("Initialising participating entities");
-        HashMap<String, BrokerDealer> brokerDealersHashMap = InitialiseEntities.addBrokerDealers();
-        HashMap<String, Customer> customerHashMap = InitialiseEntities.addCustomers(brokerDealersHashMap);
-        HashSet<String> tickerSet = InitialiseEntities.addTickers();
+        ReferenceData referenceData = InitialiseEntities.loadReferenceData();
         HashSet<Integer> orderIdSet = new HashSet<>();
         Exchange exchange = new Exchange();
+        exchange.addTickers(referenceData);
 
         ReadWriteFiles readWriteFiles = ReadWriteFiles.builder()
-            .brokerDealerHashMap(brokerDealersHashMap)
-            .customerHashMap(customerHashMap)
-            .tickerSet(tickerSet)
+            .referenceData(referenceData)
             .orderIdSet(orderIdSet)
             .exchange(exchange)
             .build();
@@ -0,0 +1,234 @@
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.HashSet;
+import lombok.extern.log4j.Log4j2;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+@Log4j2
+public class MatchingTest {
+
+    public ReadWriteFiles testMatchingSetup(){
+        LOGGER.info("Initialising participating entities");
+        ReferenceData referenceData = InitialiseEntities.loadReferenceData();
+        HashSet<Integer> orderIdSet = new HashSet<>();
+        Exchange exchange = new Exchange();
+        exchange.addTickers(referenceData);
+
+        ReadWriteFiles readWriteFiles = ReadWriteFiles.builder()
+            .referenceData(referenceData)
+            .orderIdSet(orderIdSet)
+            .exchange(exchange)
+            .build();
+
+        return readWriteFiles;
+    }
+
+    @Test
+    public void testPriceTimePriority() throws IOException {
+        /*
+        Test to assert that resting LIMIT orders are matched best price first, and earliest first within the same
+        price. The cheaper GOOG order must never be matched against IBM orders, and orderId 7 is not matched as its
+        limit price is below the remaining IBM SELL order
+
+        ORDER ID,CUSTOMER NAME,DIRECTION,QUANTITY,TICKER,TYPE,LIMIT PRICE,TIME IN FORCE,TRIGGER PRICE
+        1,CLIENT1,SELL,100,IBM,LIMIT,101.01,GTC,NULL
+        2,CLIENT2,SELL,100,IBM,LIMIT,100.01,GTC,NULL
+        3,CLIENT3,SELL,100,IBM,LIMIT,100.01,GTC,NULL
+        4,CLIENT4,SELL,100,GOOG,LIMIT,99.01,GTC,NULL
+        5,CLIENT5,BUY,100,IBM,LIMIT,100.50,GTC,NULL
+        6,CLIENT6,BUY,100,IBM,MARKET,NULL,GTC,NULL
+        7,CLIENT7,BUY,100,IBM,LIMIT,100.50,GTC,NULL
+        8,CLIENT8,BUY,100,IBM,MARKET,NULL,GTC,NULL
+         */
+        //Given
+        ReadWriteFiles readWriteFiles = testMatchingSetup();
+        String ordersFileName = "src/test/resources/Program Arguments/Orders/testPriceTimePriority";
+
+        //When
+        ArrayList<Agreement> agreementArrayList = readWriteFiles.readOrdersFile(ordersFileName);
+
+        //Then
+        Assert.assertEquals(3, agreementArrayList.size());
+        Assert.assertEquals("CLIENT5,CLIENT2,IBM,100,100.01,1", agreementArrayList.get(0).toString());
+        Assert.assertEquals("CLIENT6,CLIENT3,IBM,100,100.01,1", agreementArrayList.get(1).toString());
+        Assert.assertEquals("CLIENT8,CLIENT1,IBM,100,101.01,1", agreementArrayList.get(2).toString());
+    }
+
+    @Test
+    public void testStopOrderCascade() throws IOException {
+        /*
+        Test to assert that a trade activates the STOP orders whose trigger price has been reached, and that the trades
+        made by those activated orders go on to activate further STOP orders. The SELL STOP order is never activated
+
+        ORDER ID,CUSTOMER NAME,DIRECTION,QUANTITY,TICKER,TYPE,LIMIT PRICE,TIME IN FORCE,TRIGGER PRICE
+        1,CLIENT1,SELL,100,IBM,LIMIT,100.01,GTC,NULL
+        2,CLIENT2,SELL,100,IBM,LIMIT,101.01,GTC,NULL
+        3,CLIENT6,SELL,100,IBM,LIMIT,102.01,GTC,NULL
+        4,CLIENT3,BUY,100,IBM,STOP-MARKET,NULL,GTC,99.50
+        5,CLIENT5,BUY,100,IBM,STOP-MARKET,NULL,GTC,100.50
+        6,CLIENT7,SELL,100,IBM,STOP-MARKET,NULL,GTC,99.00
+        7,CLIENT4,BUY,100,IBM,MARKET,NULL,GTC,NULL
+         */
+        //Given
+        ReadWriteFiles readWriteFiles = testMatchingSetup();
+        String ordersFileName = "src/test/resources/Program Arguments/Orders/testStopOrderCascade";
+
+        //When
+        ArrayList<Agreement> agreementArrayList = readWriteFiles.readOrdersFile(ordersFileName);
+
+        //Then
+        Assert.assertEquals(3, agreementArrayList.size());
+        Assert.assertEquals("CLIENT4,CLIENT1,IBM,100,100.01,1", agreementArrayList.get(0).toString());
+        Assert.assertEquals("CLIENT3,CLIENT2,IBM,100,101.01,1", agreementArrayList.get(1).toString());
+        Assert.assertEquals("CLIENT5,CLIENT6,IBM,100,102.01,1", agreementArrayList.get(2).toString());
+    }
+
+    @Test
+    public void testPartitionedExchange() throws IOException {
+        /*
+        Test to assert that matching IBM and GOOG orders on separate threads makes the same Agreements, in the same
+        order, as matching them on a single thread. Order 3 is activated by the GOOG trade made by order 6
+
+        ORDER ID,CUSTOMER NAME,DIRECTION,QUANTITY,TICKER,TYPE,LIMIT PRICE,TIME IN FORCE,TRIGGER PRICE
+        1,CLIENT1,SELL,100,IBM,LIMIT,100.01,GTC,NULL
+        2,CLIENT2,SELL,100,GOOG,LIMIT,200.01,GTC,NULL
+        3,CLIENT3,BUY,100,GOOG,STOP-MARKET,NULL,GTC,199.50
+        4,CLIENT4,SELL,100,GOOG,LIMIT,201.01,GTC,NULL
+        5,CLIENT5,BUY,100,IBM,MARKET,NULL,GTC,NULL
+        6,CLIENT6,BUY,100,GOOG,LIMIT,200.50,GTC,NULL
+        7,CLIENT7,SELL,100,IBM,LIMIT,99.01,GTC,NULL
+        8,CLIENT8,BUY,100,IBM,LIMIT,99.50,GTC,NULL
+         */
+        //Given
+        ReferenceData referenceData = InitialiseEntities.loadReferenceData();
+        Exchange exchange = new Exchange();
+        exchange.addTickers(referenceData);
+        PartitionedExchange partitionedExchange = new PartitionedExchange(exchange, 2);
+
+        ReadWriteFiles readWriteFiles = ReadWriteFiles.builder()
+            .referenceData(referenceData)
+            .orderIdSet(new HashSet<>())
+            .exchange(exchange)
+            .partitionedExchange(partitionedExchange)
+            .build();
+        String ordersFileName = "src/test/resources/Program Arguments/Orders/testPartitionedExchange";
+
+        //When
+        ArrayList<Agreement> agreementArrayList = readWriteFiles.readOrdersFile(ordersFileName);
+        ArrayList<Agreement> singleThreadedAgreementArrayList = testMatchingSetup().readOrdersFile(ordersFileName);
+        partitionedExchange.shutdown();
+
+        //Then
+        Assert.assertEquals(4, agreementArrayList.size());
+        Assert.assertEquals("CLIENT5,CLIENT1,IBM,100,100.01,1", agreementArrayList.get(0).toString());
+        Assert.assertEquals("CLIENT6,CLIENT2,GOOG,100,200.01,1", agreementArrayList.get(1).toString());
+        Assert.assertEquals("CLIENT3,CLIENT4,GOOG,100,201.01,1", agreementArrayList.get(2).toString());
+        Assert.assertEquals("CLIENT8,CLIENT7,IBM,100,99.01,1", agreementArrayList.get(3).toString());
+        Assert.assertEquals(singleThreadedAgreementArrayList.toString(), agreementArrayList.toString());
+    }
+
+    @Test
+    public void testOrderParsingPipeline() throws IOException {
+        /*
+        Test to assert that parsing the orders files on several threads, two lines at a time, makes the same Agreements,
+        in the same order, as reading them serially. The files include duplicate order ids, which are only rejected
+        once the rows are back in file order, rows which fail to parse, and a cascade of STOP orders
+         */
+        //Given
+        String[] ordersFileNames = {"testOrderId", "testCustomerId", "testDirection", "testQuantity", "testTicker",
+            "testLimitPrice", "testTriggerPrice", "testStopOrderCascade", "testPriceTimePriority"};
+        ReferenceData referenceData = InitialiseEntities.loadReferenceData();
+
+        for (String ordersFileName : ordersFileNames) {
+            String ordersFilePath = "src/test/resources/Program Arguments/Orders/" + ordersFileName;
+            Exchange exchange = new Exchange();
+            exchange.addTickers(referenceData);
+            OrderParsingPipeline orderParsingPipeline = new OrderParsingPipeline(referenceData,
+                exchange.getStageLatencies(), 3, 2);
+            ReadWriteFiles readWriteFiles = ReadWriteFiles.builder()
+                .referenceData(referenceData)
+                .orderIdSet(new HashSet<>())
+                .exchange(exchange)
+                .orderParsingPipeline(orderParsingPipeline)
+                .build();
+
+            //When
+            ArrayList<Agreement> agreementArrayList = readWriteFiles.readOrdersFile(ordersFilePath);
+            ArrayList<Agreement> serialAgreementArrayList = testMatchingSetup().readOrdersFile(ordersFilePath);
+            orderParsingPipeline.shutdown();
+
+            //Then
+            Assert.assertFalse(ordersFileName, serialAgreementArrayList.isEmpty());
+            Assert.assertEquals(ordersFileName, serialAgreementArrayList.toString(), agreementArrayList.toString());
+        }
+    }
+
+    @Test
+    public void testLastExecutedPrices() throws IOException {
+        /*
+        Test to assert that the last executed price of each ticker is the price of its latest trade, and that a ticker
+        which has not traded has no last executed price. Uses the orders of testPriceTimePriority, where the last IBM
+        trade is at 101.01 and no GOOG orders are matched
+         */
+        //Given
+        ReferenceData referenceData = InitialiseEntities.loadReferenceData();
+        Exchange exchange = new Exchange();
+        exchange.addTickers(referenceData);
+
+        ReadWriteFiles readWriteFiles = ReadWriteFiles.builder()
+            .referenceData(referenceData)
+            .orderIdSet(new HashSet<>())
+            .exchange(exchange)
+            .build();
+        String ordersFileName = "src/test/resources/Program Arguments/Orders/testPriceTimePriority";
+
+        //When
+        readWriteFiles.readOrdersFile(ordersFileName);
+        LastExecutedPriceView lastExecutedPrices = exchange.getLastExecutedPrices();
+
+        //Then
+        Assert.assertEquals(101.01, lastExecutedPrices.getLastExecutedPrice(exchange.getTickerId("IBM")), 0.0);
+        Assert.assertEquals(LastExecutedPrices.NOT_EXECUTED,
+            lastExecutedPrices.getLastExecutedPrice(exchange.getTickerId("GOOG")), 0.0);
+    }
+
+
+    @Test
+    public void testExchangeMetrics() throws IOException {
+        /*
+        Test to assert that the exchange metrics follow the orders of testPriceTimePriority: all 8 orders are accepted
+        and 3 trades are matched, leaving orderId 7 resting on the IBM BUY side and orderId 4 on the GOOG SELL side
+         */
+        //Given
+        ReferenceData referenceData = InitialiseEntities.loadReferenceData();
+        Exchange exchange = new Exchange();
+        exchange.addTickers(referenceData);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        exchange.getMetrics().bindTo(registry);
+
+        ReadWriteFiles readWriteFiles = ReadWriteFiles.builder()
+            .referenceData(referenceData)
+            .orderIdSet(new HashSet<>())
+            .exchange(exchange)
+            .build();
+        String ordersFileName = "src/test/resources/Program Arguments/Orders/testPriceTimePriority";
+
+        //When
+        readWriteFiles.readOrdersFile(ordersFileName);
+
+        //Then
+        Assert.assertEquals(8.0, registry.get("exchange.orders.accepted").functionCounter().count(), 0.0);
+        Assert.assertEquals(0.0,
+            registry.get("exchange.orders.rejected").tag("reason", "INVALID_INPUT").functionCounter().count(), 0.0);
+        Assert.assertEquals(3.0, registry.get("exchange.agreements").functionCounter().count(), 0.0);
+        Assert.assertEquals(1.0, registry.get("exchange.book.depth")
+            .tags("ticker", "IBM", "side", "BUY", "type", "LIMIT").gauge().value(), 0.0);
+        Assert.assertEquals(0.0, registry.get("exchange.book.depth")
+            .tags("ticker", "IBM", "side", "SELL", "type", "LIMIT").gauge().value(), 0.0);
+        Assert.assertEquals(1.0, registry.get("exchange.book.depth")
+            .tags("ticker", "GOOG", "side", "SELL", "type", "LIMIT").gauge().value(), 0.0);
+    }
+}
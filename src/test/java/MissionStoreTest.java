@@ -0,0 +1,52 @@
+import java.util.ArrayList;
+import lombok.extern.log4j.Log4j2;
+import org.junit.Assert;
+import org.junit.Test;
+
+@Log4j2
+public class MissionStoreTest {
+
+    private static Agreement mission(ReferenceData referenceData, int quantity, int dateOfAgreement) {
+        return Agreement.builder()
+            .buyCustomer(referenceData.getCustomer("CLIENT1"))
+            .sellCustomer(referenceData.getCustomer("CLIENT2"))
+            .ticker("IBM")
+            .tickerId(referenceData.getTickerId("IBM"))
+            .matchQuantity(quantity)
+            .matchPrice(100.0)
+            .dateOfAgreement(dateOfAgreement)
+            .build();
+    }
+
+    @Test
+    public void testMissionsTakenOutOnSettlementDate() {
+        /*
+        Test to assert that under a T+3 cycle the missions agreed on day 1 are due on day 4 and no other day, in the
+        order they were added, while the missions agreed on later days stay in the store, listed in the order they were
+        agreed in. The missions due on day 3 are never taken out, so the mission agreed on day 0 stays in the store
+         */
+        //Given
+        ReferenceData referenceData = InitialiseEntities.loadReferenceData();
+        MissionStore missionStore = new MissionStore(3);
+        missionStore.add(mission(referenceData, 1, 0));
+        missionStore.add(mission(referenceData, 2, 1));
+        missionStore.add(mission(referenceData, 3, 2));
+        missionStore.add(mission(referenceData, 4, 1));
+        missionStore.add(mission(referenceData, 5, 3));
+
+        //When
+        ArrayList<Agreement> dueOnDay2 = missionStore.takeDue(2);
+        ArrayList<Agreement> dueOnDay4 = missionStore.takeDue(4);
+
+        //Then
+        Assert.assertTrue(dueOnDay2.isEmpty());
+        Assert.assertEquals(2, dueOnDay4.size());
+        Assert.assertEquals(2, dueOnDay4.get(0).getMatchQuantity());
+        Assert.assertEquals(4, dueOnDay4.get(1).getMatchQuantity());
+        Assert.assertEquals(3, missionStore.size());
+        Assert.assertEquals("[CLIENT1,CLIENT2,IBM,1,100.0,0, CLIENT1,CLIENT2,IBM,3,100.0,2, CLIENT1,CLIENT2,IBM,5,100.0,3]",
+            missionStore.toList().toString());
+        Assert.assertEquals(4, new ESMA(missionStore.getSettlementCycle()).createSettlement(dueOnDay4.get(0))
+            .getDateOfSettlement());
+    }
+}
@@ -0,0 +1,164 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import lombok.extern.log4j.Log4j2;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+@Log4j2
+public class OrderCsvParserTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static Order parse(OrderCsvParser orderCsvParser, String row) {
+        byte[] rowBytes = row.getBytes(Charset.defaultCharset());
+        return orderCsvParser.parse(ByteBuffer.wrap(rowBytes), 0, rowBytes.length);
+    }
+
+    @Test
+    public void testNumbersMatchJdkParsers() {
+        /*
+        Test to assert that the quantities and prices decoded from the bytes of a row are exactly those which
+        Integer.parseInt and Double.parseDouble give for the same text, both for the plain decimals which are decoded
+        in place and for the forms which are left to the JDK parsers
+         */
+        //Given
+        OrderCsvParser orderCsvParser = new OrderCsvParser(InitialiseEntities.loadReferenceData());
+        String[] quantities = {"100", "0", "+7", "-15", "999999999", "2147483647", "0000000000001"};
+        String[] prices = {"102.93", "0.1", "99.999", ".5", "5.", "-0.0", "+1.25", "123456789012345",
+            "1234567890.123456", "1e2", "0.30000000000000004"};
+
+        for (String quantity : quantities) {
+            for (String price : prices) {
+                String row = "1,CLIENT1,BUY," + quantity + ",IBM,LIMIT," + price + ",GTC," + price;
+
+                //When
+                Order order = parse(orderCsvParser, row);
+
+                //Then
+                Assert.assertEquals(Integer.parseInt(quantity), order.getQuantity());
+                Assert.assertEquals(Double.doubleToLongBits(Double.parseDouble(price)),
+                    Double.doubleToLongBits(order.getLimitPrice()));
+                Assert.assertEquals(Double.doubleToLongBits(Double.parseDouble(price)),
+                    Double.doubleToLongBits(order.getTriggerPrice()));
+            }
+        }
+    }
+
+    @Test
+    public void testRowsSplitAsStringSplit() {
+        /*
+        Test to assert that rows are split into fields as String.split(",") splits them: empty fields at the end of a
+        row are dropped, so a row ending in one comma still has 9 fields, while a row with a tenth field is rejected as
+        invalid input, and a row with an empty field inside it is rejected for that field
+         */
+        //Given
+        OrderCsvParser orderCsvParser = new OrderCsvParser(InitialiseEntities.loadReferenceData());
+
+        //When
+        Order trailingComma = parse(orderCsvParser, "1,CLIENT1,SELL,100,IBM,MARKET,NULL,FOK,NULL,,");
+
+        //Then
+        Assert.assertEquals(Direction.SELL, trailingComma.getDirection());
+        Assert.assertEquals(Order.NO_PRICE, trailingComma.getLimitPrice(), 0);
+        Assert.assertEquals("IBM", trailingComma.getTicker());
+        String[] invalidRows = {"1,CLIENT1,SELL,100,IBM,MARKET,NULL,FOK", "1,CLIENT1,SELL,100,IBM,MARKET,NULL,FOK,NULL,1",
+            ""};
+        for (String invalidRow : invalidRows) {
+            Assert.assertNull(invalidRow, parse(orderCsvParser, invalidRow));
+            Assert.assertEquals(invalidRow, RejectReason.INVALID_INPUT, orderCsvParser.getRejectReason());
+        }
+        Assert.assertNull(parse(orderCsvParser, "1,CLIENT1,SELL,,IBM,MARKET,NULL,FOK,NULL"));
+        Assert.assertEquals(RejectReason.INVALID_QUANTITY, orderCsvParser.getRejectReason());
+    }
+
+    @Test
+    public void testRejectedNumbersMatchJdkParsers() {
+        /*
+        Test to assert that a quantity or price is rejected, without an exception being thrown, exactly when
+        Integer.parseInt or Double.parseDouble would reject the same text, and that the forms which they accept are
+        decoded to the same values. The row is rejected for the first field which cannot be decoded
+         */
+        //Given
+        OrderCsvParser orderCsvParser = new OrderCsvParser(InitialiseEntities.loadReferenceData());
+        String[] numbers = {"+", "-", "1e3", "5 ", " 5", "2147483648", "-2147483648", "-2147483649", "00000000002147483647",
+            "1.2.3", ".", "1e", "1e+", "1e-5", "1E5d", "1.5f", "1.5ff", " 7.25 ", "0x1p3", "0x1.8P-1", "0x1", "0x.p1",
+            "-0X.8p1D", "NaN", "-Infinity", "Infinityx", "abc", "1_000"};
+
+        for (String number : numbers) {
+            //When
+            Order quantityOrder = parse(orderCsvParser, "1,CLIENT1,BUY," + number + ",IBM,LIMIT,1.00,GTC,NULL");
+            RejectReason quantityRejectReason = orderCsvParser.getRejectReason();
+            Order priceOrder = parse(orderCsvParser, "1,CLIENT1,BUY,100,IBM,LIMIT," + number + ",GTC,NULL");
+            RejectReason priceRejectReason = orderCsvParser.getRejectReason();
+
+            //Then
+            try {
+                Assert.assertEquals(number, Integer.parseInt(number), quantityOrder.getQuantity());
+            } catch (NumberFormatException e) {
+                Assert.assertNull(number, quantityOrder);
+                Assert.assertEquals(number, RejectReason.INVALID_QUANTITY, quantityRejectReason);
+            }
+            try {
+                Assert.assertEquals(number, Double.doubleToLongBits(Double.parseDouble(number)),
+                    Double.doubleToLongBits(priceOrder.getLimitPrice()));
+            } catch (NumberFormatException e) {
+                Assert.assertNull(number, priceOrder);
+                Assert.assertEquals(number, RejectReason.INVALID_LIMIT_PRICE, priceRejectReason);
+            }
+        }
+    }
+
+    @Test
+    public void testFieldsCheckedInOrder() {
+        /*
+        Test to assert that a row with more than one invalid field is rejected for the field which is checked first:
+        the order id, quantity, type and prices are decoded before the direction and time in force are checked
+         */
+        //Given
+        OrderCsvParser orderCsvParser = new OrderCsvParser(InitialiseEntities.loadReferenceData());
+        String[] rows = {"1,CLIENT1,HOLD,abc,IBM,LIMIT,100.00,GTC,NULL",
+            "1,CLIENT1,HOLD,100,IBM,ICEBERG,100.00,DAY,NULL", "1,CLIENT1,HOLD,100,IBM,LIMIT,abc,DAY,NULL",
+            "1,CLIENT1,BUY,100,IBM,LIMIT,100.00,DAY,abc", "1,CLIENT1,HOLD,100,IBM,LIMIT,100.00,DAY,NULL"};
+        RejectReason[] rejectReasons = {RejectReason.INVALID_QUANTITY, RejectReason.INVALID_TYPE,
+            RejectReason.INVALID_LIMIT_PRICE, RejectReason.INVALID_TRIGGER_PRICE, RejectReason.INVALID_DIRECTION};
+
+        for (int i = 0; i < rows.length; i++) {
+            //When
+            Order order = parse(orderCsvParser, rows[i]);
+
+            //Then
+            Assert.assertNull(rows[i], order);
+            Assert.assertEquals(rows[i], rejectReasons[i], orderCsvParser.getRejectReason());
+        }
+    }
+
+    @Test
+    public void testLinesReadAcrossWindows() throws IOException {
+        /*
+        Test to assert that the MappedLineReader hands over the same lines as BufferedReader.readLine, whatever the
+        line terminators, when the file is mapped in windows smaller than the file, including when a "\r\n" falls
+        across the boundary of two windows
+         */
+        //Given
+        Path path = temporaryFolder.newFile().toPath();
+        Files.write(path, "HEADER1\r\n1,a\r\n\n22,bb\r333,ccc\r\n4444".getBytes(Charset.defaultCharset()));
+        ArrayList<String> lines = new ArrayList<String>();
+
+        //When
+        new MappedLineReader(8).read(path, (buffer, start, end) -> {
+            byte[] lineBytes = new byte[end - start];
+            for (int i = 0; i < lineBytes.length; i++) lineBytes[i] = buffer.get(start + i);
+            lines.add(new String(lineBytes, Charset.defaultCharset()));
+        });
+
+        //Then
+        Assert.assertEquals(Files.readAllLines(path, Charset.defaultCharset()), lines);
+    }
+}
@@ -0,0 +1,237 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import lombok.extern.log4j.Log4j2;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+@Log4j2
+public class OrderJournalTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static ArrayList<String> toStrings(ArrayList<Agreement> agreements) {
+        ArrayList<String> strings = new ArrayList<String>();
+        for (Agreement agreement : agreements) strings.add(agreement.toString());
+        return strings;
+    }
+
+    @Test
+    public void testReplayRebuildsOrderBooks() throws IOException {
+        /*
+        Test to assert that replaying the journal of testStopOrderCascade into a new Exchange makes the same Agreements
+        as the original run, and leaves the same resting and STOP orders behind, so that the same further orders make
+        the same Agreements on both exchanges: the trade at 98.00 activates the SELL STOP order of CLIENT7, which is
+        then matched by orderId 10. The journal regions only hold two orders each, so the journal is written and read
+        across several regions
+         */
+        //Given
+        Path journalPath = temporaryFolder.newFile().toPath();
+        ReferenceData referenceData = InitialiseEntities.loadReferenceData();
+        Exchange exchange = new Exchange();
+        exchange.addTickers(referenceData);
+        HashSet<Integer> orderIdSet = new HashSet<>();
+        OrderJournal orderJournal = new OrderJournal(journalPath, OrderJournal.SyncPolicy.BATCH, 2, 100);
+        ReadWriteFiles readWriteFiles = ReadWriteFiles.builder()
+            .referenceData(referenceData)
+            .orderIdSet(orderIdSet)
+            .exchange(exchange)
+            .orderJournal(orderJournal)
+            .build();
+        ArrayList<Agreement> agreements = readWriteFiles.readOrdersFile(
+            "src/test/resources/Program Arguments/Orders/testStopOrderCascade");
+        orderJournal.close();
+
+        Exchange replayedExchange = new Exchange();
+        replayedExchange.addTickers(referenceData);
+        HashSet<Integer> replayedOrderIdSet = new HashSet<>();
+        ArrayList<Agreement> replayedAgreements = new ArrayList<Agreement>();
+
+        //When
+        OrderJournal reopenedJournal = new OrderJournal(journalPath, OrderJournal.SyncPolicy.NONE, 1, 100);
+        HashSet<Integer> replayedOrderIds = reopenedJournal.replay(referenceData, replayedExchange,
+            replayedOrderIdSet, replayedAgreements::add);
+        reopenedJournal.close();
+
+        ArrayList<Agreement> furtherAgreements = new ArrayList<Agreement>();
+        ArrayList<Agreement> replayedFurtherAgreements = new ArrayList<Agreement>();
+        String[] furtherOrders = {"8,CLIENT8,BUY,100,IBM,LIMIT,98.00,GTC,NULL",
+            "9,CLIENT9,SELL,100,IBM,LIMIT,98.00,GTC,NULL",
+            "10,CLIENT1,BUY,100,IBM,LIMIT,97.00,GTC,NULL"};
+        for (String furtherOrder : furtherOrders) {
+            ReadWriteFiles.builder().referenceData(referenceData).orderIdSet(orderIdSet).exchange(exchange).build()
+                .orderToExchange(furtherOrder, furtherAgreements::add);
+            ReadWriteFiles.builder().referenceData(referenceData).orderIdSet(replayedOrderIdSet)
+                .exchange(replayedExchange).build()
+                .orderToExchange(furtherOrder, replayedFurtherAgreements::add);
+        }
+
+        //Then
+        Assert.assertEquals(7, replayedOrderIds.size());
+        Assert.assertEquals(toStrings(agreements), toStrings(replayedAgreements));
+        Assert.assertEquals(toStrings(furtherAgreements), toStrings(replayedFurtherAgreements));
+        Assert.assertEquals(2, furtherAgreements.size());
+        Assert.assertEquals("CLIENT1,CLIENT7,IBM,100,97.0,1", furtherAgreements.get(1).toString());
+        Assert.assertTrue(replayedOrderIdSet.contains(7));
+        Assert.assertEquals(7 * 48, journalPath.toFile().length());
+    }
+
+    @Test
+    public void testReplayRefusesJournalPastExchangeDate() throws IOException {
+        /*
+        Test to assert that a journal of orders accepted on days 1 and 2 is refused when replayed into a new Exchange
+        on day 1, since the missions settled at the end of day 1 would be missing from its Accounts, while the same
+        journal replays onto an Exchange on day 2, skipping the orders of day 1
+         */
+        //Given
+        Path journalPath = temporaryFolder.newFile().toPath();
+        ReferenceData referenceData = InitialiseEntities.loadReferenceData();
+        Exchange exchange = new Exchange();
+        exchange.addTickers(referenceData);
+        OrderJournal orderJournal = new OrderJournal(journalPath, OrderJournal.SyncPolicy.NONE, 1, 100);
+        ReadWriteFiles readWriteFiles = ReadWriteFiles.builder()
+            .referenceData(referenceData)
+            .orderIdSet(new HashSet<Integer>())
+            .exchange(exchange)
+            .orderJournal(orderJournal)
+            .build();
+        readWriteFiles.orderToExchange("1,CLIENT1,BUY,100,IBM,LIMIT,98.00,GTC,NULL", agreement -> { });
+        exchange.incrementDate();
+        readWriteFiles.orderToExchange("2,CLIENT2,SELL,100,IBM,LIMIT,99.00,GTC,NULL", agreement -> { });
+        orderJournal.close();
+
+        Exchange replayedExchange = new Exchange();
+        replayedExchange.addTickers(referenceData);
+        Exchange dayTwoExchange = new Exchange();
+        dayTwoExchange.addTickers(referenceData);
+        dayTwoExchange.incrementDate();
+        OrderJournal reopenedJournal = new OrderJournal(journalPath, OrderJournal.SyncPolicy.NONE, 1, 100);
+
+        //When
+        boolean refused = false;
+        try {
+            reopenedJournal.replay(referenceData, replayedExchange, new HashSet<Integer>(), agreement -> { });
+        } catch (IllegalStateException e) {
+            refused = true;
+        }
+        HashSet<Integer> replayedOrderIds = reopenedJournal.replay(referenceData, dayTwoExchange,
+            new HashSet<Integer>(), agreement -> { });
+        reopenedJournal.close();
+
+        //Then
+        Assert.assertTrue(refused);
+        Assert.assertEquals(1, replayedOrderIds.size());
+        Assert.assertTrue(replayedOrderIds.contains(2));
+    }
+
+    @Test
+    public void testReplayedOrdersSkippedWhenReadAgain() throws IOException {
+        /*
+        Test to assert that once the journal of testStopOrderCascade has been replayed, reading the same orders file
+        again skips the replayed orders without matching them again or writing them to the rejects file as
+        DUPLICATE_ORDER_ID, while an order id repeated after them is still rejected
+         */
+        //Given
+        Path journalPath = temporaryFolder.newFile().toPath();
+        String rejectsFileName = temporaryFolder.getRoot().toPath().resolve("rejects").toString();
+        ReferenceData referenceData = InitialiseEntities.loadReferenceData();
+        Exchange exchange = new Exchange();
+        exchange.addTickers(referenceData);
+        OrderJournal orderJournal = new OrderJournal(journalPath, OrderJournal.SyncPolicy.NONE, 1, 100);
+        ReadWriteFiles.builder()
+            .referenceData(referenceData)
+            .orderIdSet(new HashSet<Integer>())
+            .exchange(exchange)
+            .orderJournal(orderJournal)
+            .build()
+            .readOrdersFile("src/test/resources/Program Arguments/Orders/testStopOrderCascade");
+        orderJournal.close();
+
+        Exchange replayedExchange = new Exchange();
+        replayedExchange.addTickers(referenceData);
+        HashSet<Integer> replayedOrderIdSet = new HashSet<>();
+        OrderJournal reopenedJournal = new OrderJournal(journalPath, OrderJournal.SyncPolicy.NONE, 1, 100);
+        HashSet<Integer> replayedOrderIds = reopenedJournal.replay(referenceData, replayedExchange,
+            replayedOrderIdSet, agreement -> { });
+        reopenedJournal.close();
+        ReadWriteFiles readWriteFiles = ReadWriteFiles.builder()
+            .referenceData(referenceData)
+            .orderIdSet(replayedOrderIdSet)
+            .exchange(replayedExchange)
+            .rejectsFileName(rejectsFileName)
+            .replayedOrderIds(replayedOrderIds)
+            .build();
+
+        //When
+        ArrayList<Agreement> agreements = readWriteFiles.readOrdersFile(
+            "src/test/resources/Program Arguments/Orders/testStopOrderCascade");
+        ArrayList<Agreement> repeatedAgreements = new ArrayList<Agreement>();
+        readWriteFiles.orderToExchange("1,CLIENT8,BUY,100,IBM,LIMIT,98.00,GTC,NULL", repeatedAgreements::add);
+
+        //Then
+        Assert.assertTrue(agreements.isEmpty());
+        Assert.assertTrue(repeatedAgreements.isEmpty());
+        Assert.assertTrue(replayedOrderIds.isEmpty());
+        Assert.assertEquals(1, Files.readAllLines(Paths.get(rejectsFileName + replayedExchange.getDate() + ".csv"))
+            .size());
+    }
+
+    @Test
+    public void testTornRecordEndsJournal() throws IOException {
+        /*
+        Test to assert that a record whose length reached the disk but whose payload did not, left as zeros by a crash,
+        ends the journal instead of being replayed as an order: the journal of testStopOrderCascade with the payload
+        of its fifth record zeroed replays only the first four orders, and the next order appended takes the place of
+        the torn record
+         */
+        //Given
+        Path journalPath = temporaryFolder.newFile().toPath();
+        ReferenceData referenceData = InitialiseEntities.loadReferenceData();
+        Exchange exchange = new Exchange();
+        exchange.addTickers(referenceData);
+        OrderJournal orderJournal = new OrderJournal(journalPath, OrderJournal.SyncPolicy.NONE, 1, 4096);
+        ReadWriteFiles.builder()
+            .referenceData(referenceData)
+            .orderIdSet(new HashSet<Integer>())
+            .exchange(exchange)
+            .orderJournal(orderJournal)
+            .build()
+            .readOrdersFile("src/test/resources/Program Arguments/Orders/testStopOrderCascade");
+        orderJournal.close();
+        long recordBytes = Files.size(journalPath) / 7;
+        try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(40), 4 * recordBytes + 4);
+        }
+
+        Exchange replayedExchange = new Exchange();
+        replayedExchange.addTickers(referenceData);
+
+        //When
+        OrderJournal reopenedJournal = new OrderJournal(journalPath, OrderJournal.SyncPolicy.NONE, 1, 4096);
+        HashSet<Integer> replayedOrderIds = reopenedJournal.replay(referenceData, replayedExchange,
+            new HashSet<Integer>(), agreement -> { });
+        ReadWriteFiles.builder()
+            .referenceData(referenceData)
+            .orderIdSet(new HashSet<Integer>(replayedOrderIds))
+            .exchange(replayedExchange)
+            .orderJournal(reopenedJournal)
+            .build()
+            .orderToExchange("5,CLIENT5,BUY,100,IBM,LIMIT,98.00,GTC,NULL", agreement -> { });
+        reopenedJournal.close();
+
+        //Then
+        Assert.assertEquals(4, replayedOrderIds.size());
+        Assert.assertFalse(replayedOrderIds.contains(0));
+        Assert.assertFalse(replayedOrderIds.contains(5));
+        Assert.assertEquals(5 * recordBytes, Files.size(journalPath));
+    }
+}
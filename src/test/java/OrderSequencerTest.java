@@ -0,0 +1,120 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import lombok.extern.log4j.Log4j2;
+import org.junit.Assert;
+import org.junit.Test;
+
+@Log4j2
+public class OrderSequencerTest {
+
+    private static final int PRODUCERS = 4;
+    private static final int ORDER_PAIRS_PER_PRODUCER = 1000;
+
+    /**
+     * Records what the sequencer returns to a single producer. Callbacks are only ever made on the sequencer thread
+     */
+    private static class ProducerCallback implements OrderCallback {
+        private int agreements = 0;
+        private int ordersCompleted = 0;
+        private int lastOrderId = -1;
+        private boolean inSubmissionOrder = true;
+        private final ArrayList<Integer> failedOrderIds = new ArrayList<Integer>();
+
+        public void onAgreement(Agreement agreement) {
+            this.agreements++;
+        }
+
+        public void onOrderComplete(Order order, int agreementsMade) {
+            if (order.getOrderId() <= this.lastOrderId) this.inSubmissionOrder = false;
+            this.lastOrderId = order.getOrderId();
+            this.ordersCompleted++;
+        }
+
+        public void onOrderFailed(Order order, RuntimeException exception) {
+            this.failedOrderIds.add(order.getOrderId());
+        }
+    }
+
+    @Test
+    public void testConcurrentProducers() throws InterruptedException {
+        /*
+        Test to assert that orders published by several threads at once are each matched exactly once, and that each
+        producer's orders complete in the order it published them. Every producer publishes GTC SELL LIMIT orders
+        alternated with GTC BUY MARKET orders for IBM; whichever side is resting is matched by the next order on the
+        other side, so every SELL order is matched by the end
+         */
+        //Given
+        ReferenceData referenceData = InitialiseEntities.loadReferenceData();
+        Exchange exchange = new Exchange();
+        int ibm = exchange.getTickerId("IBM");
+        OrderSequencer orderSequencer = new OrderSequencer(exchange, 1024);
+        orderSequencer.start();
+
+        ArrayList<ProducerCallback> callbacks = new ArrayList<ProducerCallback>();
+        ArrayList<Thread> producers = new ArrayList<Thread>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            ProducerCallback callback = new ProducerCallback();
+            callbacks.add(callback);
+            Customer customer = referenceData.getCustomer("CLIENT" + (p + 1));
+            int firstOrderId = p * ORDER_PAIRS_PER_PRODUCER * 2;
+            producers.add(new Thread(() -> {
+                for (int i = 0; i < ORDER_PAIRS_PER_PRODUCER; i++) {
+                    orderSequencer.publish(Order.builder().customer(customer).orderId(firstOrderId + 2 * i)
+                        .direction(Direction.SELL).quantity(100).ticker("IBM").tickerId(ibm).type(OrderType.LIMIT)
+                        .limitPrice(100.01).timeInForce(TimeInForce.GTC).triggerPrice(Order.NO_PRICE).build(), callback);
+                    orderSequencer.publish(Order.builder().customer(customer).orderId(firstOrderId + 2 * i + 1)
+                        .direction(Direction.BUY).quantity(100).ticker("IBM").tickerId(ibm).type(OrderType.MARKET)
+                        .limitPrice(Order.NO_PRICE).timeInForce(TimeInForce.GTC).triggerPrice(Order.NO_PRICE).build(),
+                        callback);
+                }
+            }));
+        }
+
+        //When
+        for (Thread producer : producers) producer.start();
+        for (Thread producer : producers) producer.join();
+        orderSequencer.shutdown();
+
+        //Then
+        int agreements = 0;
+        for (ProducerCallback callback : callbacks) {
+            Assert.assertEquals(ORDER_PAIRS_PER_PRODUCER * 2, callback.ordersCompleted);
+            Assert.assertTrue(callback.inSubmissionOrder);
+            agreements += callback.agreements;
+        }
+        Assert.assertEquals(PRODUCERS * ORDER_PAIRS_PER_PRODUCER, agreements);
+    }
+
+    @Test
+    public void testOrderFailedWhenMatchingThrows() throws InterruptedException {
+        /*
+        Test to assert that an order the Exchange throws on, here one for a ticker id with no OrderBook, is passed to
+        onOrderFailed rather than being dropped, and that the sequencer carries on matching the orders published after
+        it: the GTC SELL LIMIT order before it is matched by the BUY MARKET order after it
+         */
+        //Given
+        Exchange exchange = new Exchange();
+        int ibm = exchange.getTickerId("IBM");
+        OrderSequencer orderSequencer = new OrderSequencer(exchange, 16);
+        ProducerCallback callback = new ProducerCallback();
+        orderSequencer.start();
+
+        //When
+        orderSequencer.publish(Order.builder().orderId(1).direction(Direction.SELL).quantity(100).tickerId(ibm)
+            .type(OrderType.LIMIT).limitPrice(100.01).timeInForce(TimeInForce.GTC).triggerPrice(Order.NO_PRICE)
+            .build(), callback);
+        orderSequencer.publish(Order.builder().orderId(2).direction(Direction.BUY).quantity(100).tickerId(ibm + 1)
+            .type(OrderType.LIMIT).limitPrice(100.01).timeInForce(TimeInForce.GTC).triggerPrice(Order.NO_PRICE)
+            .build(), callback);
+        orderSequencer.publish(Order.builder().orderId(3).direction(Direction.BUY).quantity(100).tickerId(ibm)
+            .type(OrderType.MARKET).limitPrice(Order.NO_PRICE).timeInForce(TimeInForce.GTC)
+            .triggerPrice(Order.NO_PRICE).build(), callback);
+        orderSequencer.shutdown();
+
+        //Then
+        Assert.assertEquals(1, callback.failedOrderIds.size());
+        Assert.assertEquals(2, (int) callback.failedOrderIds.get(0));
+        Assert.assertEquals(2, callback.ordersCompleted);
+        Assert.assertEquals(1, callback.agreements);
+    }
+}
@@ -0,0 +1,43 @@
+import java.util.ArrayList;
+import lombok.extern.log4j.Log4j2;
+import org.junit.Assert;
+import org.junit.Test;
+
+@Log4j2
+public class PartitionedSettlementTest {
+
+    @Test
+    public void testSameBalancesAndRecordsAsSerialSettlement() {
+        /*
+        Test to assert that settling the missions of SettlementNettingTest on 3 settlement workers, as two days of 150
+        missions each, leaves every customer and broker dealer Account with exactly the cash and shares that settling
+        them one at a time through ESMA leaves them with, and hands back the settlement records in mission order
+         */
+        //Given
+        ReferenceData serialReferenceData = InitialiseEntities.loadReferenceData();
+        ReferenceData partitionedReferenceData = InitialiseEntities.loadReferenceData();
+        ESMA esma = new ESMA(MissionStore.DEFAULT_SETTLEMENT_CYCLE);
+        PartitionedSettlement partitionedSettlement = new PartitionedSettlement(3);
+        ArrayList<Agreement> missions = SettlementNettingTest.missions(partitionedReferenceData);
+        StringBuilder expectedRecords = new StringBuilder();
+        for (Agreement agreement : SettlementNettingTest.missions(serialReferenceData)) {
+            expectedRecords.append(esma.facilitateTransaction(agreement).toString()).append('\n');
+        }
+
+        //When
+        StringBuilder records = new StringBuilder();
+        for (StringBuilder settlementRecords : partitionedSettlement.settle(
+            new ArrayList<Agreement>(missions.subList(0, 150)), esma, new StageLatencies())) {
+            records.append(settlementRecords);
+        }
+        for (StringBuilder settlementRecords : partitionedSettlement.settle(
+            new ArrayList<Agreement>(missions.subList(150, 300)), esma, new StageLatencies())) {
+            records.append(settlementRecords);
+        }
+        partitionedSettlement.shutdown();
+
+        //Then
+        Assert.assertEquals(expectedRecords.toString(), records.toString());
+        SettlementNettingTest.assertSameAccounts(serialReferenceData, partitionedReferenceData);
+    }
+}
@@ -0,0 +1,104 @@
+import java.util.ArrayList;
+import lombok.extern.log4j.Log4j2;
+import org.junit.Assert;
+import org.junit.Test;
+
+@Log4j2
+public class SettlementNettingTest {
+
+    static ArrayList<Agreement> missions(ReferenceData referenceData) {
+        double[] prices = {102.93, 0.1, 33.33, 99.99, 1e-3, 7.77};
+        ArrayList<Agreement> missions = new ArrayList<Agreement>();
+        for (int i = 0; i < 300; i++) {
+            String ticker = referenceData.getTicker(i % referenceData.getTickerCount());
+            missions.add(Agreement.builder()
+                .buyCustomer(referenceData.getCustomer("CLIENT" + (1 + i % 3)))
+                .sellCustomer(referenceData.getCustomer("CLIENT" + (1 + i % 5)))
+                .ticker(ticker)
+                .tickerId(referenceData.getTickerId(ticker))
+                .matchQuantity(1 + i % 7)
+                .matchPrice(prices[i % prices.length] * (1 + i % 11))
+                .dateOfAgreement(0)
+                .build());
+        }
+        return missions;
+    }
+
+    static void assertSameAccounts(ReferenceData expectedReferenceData, ReferenceData referenceData) {
+        for (int brokerDealerId = 0; brokerDealerId < expectedReferenceData.getBrokerDealerCount(); brokerDealerId++) {
+            BrokerDealer expectedBrokerDealer = expectedReferenceData.getBrokerDealer(brokerDealerId);
+            BrokerDealer brokerDealer = referenceData.getBrokerDealer(brokerDealerId);
+            Assert.assertEquals(expectedBrokerDealer.getBrokerDealerAccount().getCashInventory(),
+                brokerDealer.getBrokerDealerAccount().getCashInventory());
+            for (int customerId = 0; customerId < expectedBrokerDealer.getCustomerAccounts().size(); customerId++) {
+                Account expectedAccount = expectedBrokerDealer.getCustomerAccounts().get(customerId);
+                Account account = brokerDealer.getCustomerAccounts().get(customerId);
+                if (expectedAccount == null) continue;
+                Assert.assertEquals(expectedAccount.getCashInventory(), account.getCashInventory());
+                Assert.assertArrayEquals(expectedAccount.copyStockInventory(), account.copyStockInventory());
+            }
+        }
+    }
+
+    @Test
+    public void testSameBalancesAsGrossSettlement() {
+        /*
+        Test to assert that netting 300 missions between CLIENT1 to CLIENT5, some of them with themselves, leaves every
+        customer and broker dealer Account with exactly the cash and shares that settling the missions one at a time
+        through ESMA leaves them with, while writing cash to each of the 5 customers and 10 brokers only once and shares
+        to each customer and ticker pair only once
+         */
+        //Given
+        ReferenceData grossReferenceData = InitialiseEntities.loadReferenceData();
+        ReferenceData nettedReferenceData = InitialiseEntities.loadReferenceData();
+        ESMA esma = new ESMA(MissionStore.DEFAULT_SETTLEMENT_CYCLE);
+        SettlementNetting settlementNetting = new SettlementNetting();
+
+        //When
+        for (Agreement agreement : missions(grossReferenceData)) esma.facilitateTransaction(agreement);
+        for (Agreement agreement : missions(nettedReferenceData)) settlementNetting.add(agreement);
+        int cashObligations = settlementNetting.getCashObligations();
+        int sharesObligations = settlementNetting.getSharesObligations();
+        settlementNetting.settle();
+
+        //Then
+        Assert.assertEquals(15, cashObligations);
+        Assert.assertEquals(10, sharesObligations);
+        Assert.assertEquals(0, settlementNetting.getMissions());
+        assertSameAccounts(grossReferenceData, nettedReferenceData);
+        Assert.assertNotEquals(Account.toMinorUnits(1000000), nettedReferenceData.getCustomer("CLIENT1").getPrimeBroker()
+            .getCustomerCash(CashCheck.builder().customer(nettedReferenceData.getCustomer("CLIENT1")).build()));
+    }
+
+    @Test
+    public void testCashHeldExactly() {
+        /*
+        Test to assert that netting 1000 missions of CLIENT1 buying from CLIENT2 at 102.93 takes exactly 1000 times the
+        match price from CLIENT1, and pays its prime broker BROKER2 exactly 1000 custodial fees of 10.293
+         */
+        //Given
+        ReferenceData referenceData = InitialiseEntities.loadReferenceData();
+        Customer buyCustomer = referenceData.getCustomer("CLIENT1");
+        SettlementNetting settlementNetting = new SettlementNetting();
+
+        //When
+        for (int i = 0; i < 1000; i++) {
+            settlementNetting.add(Agreement.builder()
+                .buyCustomer(buyCustomer)
+                .sellCustomer(referenceData.getCustomer("CLIENT2"))
+                .ticker("IBM")
+                .tickerId(referenceData.getTickerId("IBM"))
+                .matchQuantity(1)
+                .matchPrice(102.93)
+                .dateOfAgreement(0)
+                .build());
+        }
+        settlementNetting.settle();
+
+        //Then
+        Assert.assertEquals((1000000 - 102930) * Account.MINOR_UNITS_PER_UNIT,
+            buyCustomer.getPrimeBroker().getCustomerCash(CashCheck.builder().customer(buyCustomer).build()));
+        Assert.assertEquals((1000000 + 10293) * Account.MINOR_UNITS_PER_UNIT,
+            buyCustomer.getPrimeBroker().getBrokerDealerAccount().getCashInventory());
+    }
+}
@@ -0,0 +1,102 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.List;
+import lombok.extern.log4j.Log4j2;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+@Log4j2
+public class WorkloadGeneratorTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File generate(long seed) throws IOException {
+        File outputDirectory = temporaryFolder.newFolder();
+        WorkloadGenerator.builder()
+            .seed(seed)
+            .days(2)
+            .ordersPerDay(500)
+            .tickerCount(3)
+            .customerCount(5)
+            .priceWalk(WorkloadGenerator.PriceWalk.MEAN_REVERTING)
+            .invalidRowRate(0.1)
+            .outputDirectory(outputDirectory.getPath())
+            .build()
+            .generate();
+        return outputDirectory;
+    }
+
+    private static List<String> readLines(File outputDirectory, String fileName) throws IOException {
+        return Files.readAllLines(new File(outputDirectory, fileName).toPath());
+    }
+
+    @Test
+    public void testSameSeedSameWorkload() throws IOException {
+        /*
+        Test to assert that the generated files are the same for the same seed and differ for a different seed, and that
+        each file has the requested number of rows after its header
+         */
+        //Given
+        String[] fileNames = {"ListOfTickers.csv", "ListOfBrokerDealers.csv", "ListOfCustomers.csv",
+            "Orders/orders1.csv", "Orders/orders2.csv"};
+
+        //When
+        File firstWorkload = generate(7);
+        File secondWorkload = generate(7);
+        File otherWorkload = generate(8);
+
+        //Then
+        for (String fileName : fileNames) {
+            Assert.assertEquals(readLines(firstWorkload, fileName), readLines(secondWorkload, fileName));
+        }
+        Assert.assertNotEquals(readLines(firstWorkload, "Orders/orders1.csv"), readLines(otherWorkload, "Orders/orders1.csv"));
+        Assert.assertEquals(4, readLines(firstWorkload, "ListOfTickers.csv").size());
+        Assert.assertEquals(6, readLines(firstWorkload, "ListOfCustomers.csv").size());
+        Assert.assertEquals(501, readLines(firstWorkload, "Orders/orders2.csv").size());
+    }
+
+    @Test
+    public void testInvalidRowsRejectedByReadWriteFiles() throws IOException {
+        /*
+        Test to assert that reading two generated days through ReadWriteFiles rejects exactly the rows the generator
+        wrote as invalid, including rows repeating the order id of an earlier valid row, and accepts every other row
+         */
+        //Given
+        File outputDirectory = temporaryFolder.newFolder();
+        long invalidRows = WorkloadGenerator.builder()
+            .seed(11)
+            .days(2)
+            .ordersPerDay(2000)
+            .invalidRowRate(0.2)
+            .outputDirectory(outputDirectory.getPath())
+            .build()
+            .generate();
+        ReferenceData referenceData = InitialiseEntities.loadReferenceData(outputDirectory.getPath());
+        Exchange exchange = new Exchange();
+        exchange.addTickers(referenceData);
+        ReadWriteFiles readWriteFiles = ReadWriteFiles.builder()
+            .referenceData(referenceData)
+            .orderIdSet(new HashSet<Integer>())
+            .exchange(exchange)
+            .rejectsFileName(new File(outputDirectory, "Rejects/rejects").getPath())
+            .build();
+
+        //When
+        readWriteFiles.readOrdersFile(new File(outputDirectory, "Orders/orders").getPath());
+        exchange.incrementDate();
+        readWriteFiles.readOrdersFile(new File(outputDirectory, "Orders/orders").getPath());
+
+        //Then
+        long rejectedRows = readLines(outputDirectory, "Rejects/rejects1.csv").size() - 1
+            + readLines(outputDirectory, "Rejects/rejects2.csv").size() - 1;
+        Assert.assertTrue(invalidRows > 0);
+        Assert.assertEquals(invalidRows, rejectedRows);
+        Assert.assertEquals(4000 - invalidRows, exchange.getMetrics().getOrdersAccepted());
+        Assert.assertTrue(exchange.getMetrics().getOrdersRejected(RejectReason.DUPLICATE_ORDER_ID) > 0);
+    }
+}